@@ -0,0 +1,180 @@
+/*
+ * $Id$
+ *
+ * Smack io
+ *
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link Pipe} implementations.
+ * <p>
+ * {@code sameThread} writes and reads on the benchmark thread.
+ * {@code crossThreadStreaming} writes on the benchmark thread while a
+ * separate thread drains the pipe.  {@code crossThreadRoundTrip}
+ * additionally waits until the message has been consumed, measuring
+ * the transfer latency.
+ *
+ * @author Michael Binz
+ */
+@State( Scope.Thread )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PipeBenchmark
+{
+    @Param( { "simple", "nio", "power", "powerLockFree" } )
+    public String pipe;
+
+    @Param( { "4096", "65536" } )
+    public int bufferSize;
+
+    @Param( { "1", "1024", "65536", "1048576" } )
+    public int messageSize;
+
+    private Pipe _pipe;
+    private OutputStream _writeEnd;
+    private InputStream _readEnd;
+
+    private byte[] _message;
+    private byte[] _readBuffer;
+
+    /**
+     * The bytes consumed by the drain thread.
+     */
+    private final AtomicLong _drained = new AtomicLong();
+
+    /**
+     * The bytes written by the benchmark thread.
+     */
+    private long _written;
+
+    private Thread _drain;
+
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        switch ( pipe )
+        {
+        case "simple":
+            _pipe = new SimplePipe( bufferSize );
+            break;
+        case "nio":
+            _pipe = new NioPipe( bufferSize );
+            break;
+        case "power":
+            _pipe = new PowerPipe( bufferSize );
+            break;
+        case "powerLockFree":
+            _pipe = new PowerPipe( bufferSize, true );
+            break;
+        default:
+            throw new IllegalArgumentException( pipe );
+        }
+
+        _writeEnd = _pipe.getWriteEnd();
+        _readEnd = _pipe.getReadEnd();
+        _message = new byte[ messageSize ];
+        _readBuffer = new byte[ bufferSize ];
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws InterruptedException
+    {
+        _pipe.close();
+
+        if ( _drain != null )
+            _drain.join();
+    }
+
+    /**
+     * Start the drain thread on first use.  Once started the pipe
+     * must not be read by the benchmark thread.
+     */
+    private void startDrain()
+    {
+        if ( _drain != null )
+            return;
+
+        _drain = new Thread( () -> {
+            // Read in units that divide the message size, since some
+            // implementations block until the requested length is read.
+            var buffer = new byte[ Math.min( bufferSize, messageSize ) ];
+            try
+            {
+                while ( true )
+                {
+                    int count = _readEnd.read( buffer, 0, buffer.length );
+                    if ( count < 0 )
+                        return;
+                    _drained.addAndGet( count );
+                }
+            }
+            catch ( IOException e )
+            {
+                // Pipe closed.
+            }
+        }, getClass().getSimpleName() );
+        _drain.setDaemon( true );
+        _drain.start();
+    }
+
+    @Benchmark
+    public void sameThread() throws IOException
+    {
+        // Stay below the buffer size so that a write never blocks.
+        int chunk = Math.max( 1, bufferSize / 2 );
+
+        for ( int off = 0 ; off < _message.length ; off += chunk )
+        {
+            int len = Math.min( chunk, _message.length - off );
+            _writeEnd.write( _message, off, len );
+
+            for ( int read = 0 ; read < len ; )
+                read += _readEnd.read( _readBuffer, 0, len - read );
+        }
+    }
+
+    @Benchmark
+    public void crossThreadStreaming() throws IOException
+    {
+        startDrain();
+
+        _writeEnd.write( _message );
+    }
+
+    @Benchmark
+    public void crossThreadRoundTrip() throws IOException
+    {
+        startDrain();
+
+        _writeEnd.write( _message );
+        _written += _message.length;
+
+        while ( _drained.get() < _written )
+            Thread.onSpinWait();
+    }
+}
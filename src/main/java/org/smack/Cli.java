@@ -8,8 +8,8 @@
 package org.smack;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.Collections;
 
 import org.smack.application.CliApplication;
 import org.smack.application.CliApplication.Named;
@@ -34,24 +34,56 @@ public final class Cli extends CliApplication
             @Named( value="stylesheet" ) File stylesheet,
             @Named( value="xml-file") File xml ) throws Exception
     {
-        out( "%s\n", XmlUtil.transform( stylesheet, xml ) );
+        XmlUtil.transform(
+                stylesheet,
+                xml,
+                Collections.emptyMap(),
+                outWriter() );
+        out( StringUtil.EOL );
     }
 
     @Command( shortDescription =
             "Tranforms xml using stylesheet.  "
             + "Writes the result to target-file.  "
-            + "If target-file exists, it is overwritten." )
+            + "If target-file exists, it is replaced after a successful "
+            + "transformation.  No line separator is appended." )
     public void xsl(
             @Named( value="stylesheet" ) File stylesheet,
             @Named( value="xml-file") File xml,
             @Named( value="target-file") String target
             ) throws Exception
     {
-        try ( Writer w = new FileWriter( target ) )
-        {
-            w.write( XmlUtil.transform( stylesheet, xml ) );
-            w.write( StringUtil.EOL );
-        }
+        XmlUtil.transform(
+                stylesheet,
+                xml,
+                Collections.emptyMap(),
+                Paths.get( target ) );
+    }
+
+    @Property( description =
+            "The number of files transformed concurrently by xslDir." )
+    public int workers =
+            Runtime.getRuntime().availableProcessors();
+
+    @Command( shortDescription =
+            "Tranforms all xml files in source-dir using stylesheet.  "
+            + "Writes the results to target-dir using the source file names.  "
+            + "Target-dir is created if it does not exist.  "
+            + "Existing files are overwritten." )
+    public void xslDir(
+            @Named( value="stylesheet" ) File stylesheet,
+            @Named( value="source-dir") File source,
+            @Named( value="target-dir") String target
+            ) throws Exception
+    {
+        int count = XmlUtil.transformDirectory(
+                stylesheet,
+                Collections.emptyMap(),
+                source.toPath(),
+                Paths.get( target ),
+                workers );
+
+        out( "%d files transformed.%n", count );
     }
 
     public static void main( String[] argv )
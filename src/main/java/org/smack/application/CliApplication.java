@@ -4,36 +4,56 @@
  */
 package org.smack.application;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Formatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.lang.model.SourceVersion;
 
+import org.smack.util.Duration;
 import org.smack.util.JavaUtil;
 import org.smack.util.ReflectionUtil;
 import org.smack.util.ServiceManager;
 import org.smack.util.StringUtil;
+import org.smack.util.TimeProbe;
 import org.smack.util.collections.MultiMap;
+import org.smack.util.collections.WeakMapWithProducer;
 import org.smack.util.converters.StringConverter;
 import org.smack.util.converters.StringConverter.Converter;
 
@@ -63,6 +83,12 @@ abstract public class CliApplication
          */
         String shortDescription() default StringUtil.EMPTY_STRING;
         String description() default StringUtil.EMPTY_STRING;
+        /**
+         * Set if the command does not depend on state shared with other
+         * invocations.  In batch mode such commands may be executed
+         * concurrently.
+         */
+        boolean parallel() default false;
     }
 
     /**
@@ -102,14 +128,38 @@ abstract public class CliApplication
      * the respective method.
      */
     private final MultiMap<String, Integer, CommandHolder> _commandMap =
-            getCommandMap( getClass() );
+            getCached( _commandMapCache, getClass() );
 
     private final Map<String,PropertyHolder> _propertyMap =
-            getPropertyMap( this );
+            getCached( _propertyMapCache, getClass() );
 
     private static final StringConverter _converters =
             ServiceManager.getApplicationService( StringConverter.class );
 
+    /**
+     * The reflected commands per implementation class.  Access is
+     * guarded by the map.
+     */
+    private static final WeakMapWithProducer<Class<?>, MultiMap<String, Integer, CommandHolder>> _commandMapCache =
+            new WeakMapWithProducer<>( CliApplication::getCommandMap );
+
+    /**
+     * The reflected properties per implementation class.  Access is
+     * guarded by the map.
+     */
+    private static final WeakMapWithProducer<Class<?>, Map<String, PropertyHolder>> _propertyMapCache =
+            new WeakMapWithProducer<>( CliApplication::getPropertyMap );
+
+    private static <V> V getCached(
+            WeakMapWithProducer<Class<?>, V> cache,
+            Class<?> key )
+    {
+        synchronized ( cache )
+        {
+            return cache.get( key );
+        }
+    }
+
     protected final static <T> void addConverter( Class<T> cl, Converter<String,T> c )
     {
         _converters.put( cl, c );
@@ -125,6 +175,14 @@ abstract public class CliApplication
     private String _currentCommand =
             StringUtil.EMPTY_STRING;
 
+    /**
+     * The standard streams of this instance. If {@code null} the
+     * respective System stream is used.
+     */
+    private InputStream _in;
+    private PrintStream _out;
+    private PrintStream _err;
+
     protected final String currentCommand()
     {
         return _currentCommand;
@@ -146,18 +204,21 @@ abstract public class CliApplication
 
     /**
      * Perform the launch of the cli instance.
+     *
+     * @return {@code true} if a command was found and executed
+     * successfully.
      */
-    private void launchInstance( String[] argv )
+    private boolean launchInstance( String[] argv )
             throws Exception
     {
         if ( argv.length == 0 ) {
             defaultCmd(argv);
-            return;
+            return true;
         }
 
         if ( argv.length == 1 && argv[0].equals("?") ) {
             err(usage());
-            return;
+            return true;
         }
 
         argv = processProperties( argv );
@@ -173,9 +234,9 @@ abstract public class CliApplication
             // We found a matching command.
             _currentCommand =
                     selectedCommand.getName() ;
-            selectedCommand.execute(
+            return selectedCommand.execute(
+                    this,
                     Arrays.copyOfRange( argv, 1, argv.length ) );
-            return;
         }
 
         // No command matched, so we check if there are commands
@@ -188,7 +249,7 @@ abstract public class CliApplication
                     "Parameter count does not match. Available alternatives:" );
             err( "%s%n",
                     getCommandsUsage(possibleCommands, argv));
-            return;
+            return false;
         }
 
         // Check if we got an unnamed command.
@@ -199,13 +260,14 @@ abstract public class CliApplication
         {
             _currentCommand =
                     selectedCommand.getName() ;
-            selectedCommand.execute(
+            return selectedCommand.execute(
+                    this,
                     argv );
-            return;
         }
 
         // No match.
         err( "Unknown command '%s'.%n", cmdName );
+        return false;
     }
 
     private void processProperty( String property )
@@ -228,7 +290,7 @@ abstract public class CliApplication
         if ( setter.isBooleanType() && value == null )
             value = "true";
 
-        setter.set( value );
+        setter.set( this, value );
     }
 
     /**
@@ -240,7 +302,7 @@ abstract public class CliApplication
      * @return A valid property name or null if the
      * passed candidate was not an allowed property name.
      */
-    private String getNameIfProperty( String candidate )
+    private static String getNameIfProperty( String candidate )
     {
         if ( StringUtil.isEmpty( candidate ) )
             return null;
@@ -306,16 +368,34 @@ abstract public class CliApplication
      * </code>
      * </pre>
      *
+     * A single argument {@code @file} executes the command lines in the
+     * passed file, {@code @-} reads them from standard input.  To pass
+     * a single argument starting with {@code @} double the leading
+     * {@code @}, e.g. {@code @@user} is executed as {@code @user}.
+     * Command lines with more than one argument are passed unmodified.
+     *
      * @param cl The implementation class of the console command.
      * @param argv The unmodified parameter array.
+     * @see #launchBatch(Supplier, Reader)
      */
     static public void launch( Class<? extends CliApplication> cl, String[] argv )
     {
         launch(
-                new DefaultCtorReflection<>( cl ),
+                factory( cl ),
                 argv );
     }
 
+    /**
+     * Get a factory creating instances using the default constructor.
+     *
+     * @param cl The implementation class of the console command.
+     * @return The factory.
+     */
+    static Supplier<CliApplication> factory( Class<? extends CliApplication> cl )
+    {
+        return new DefaultCtorReflection<>( cl );
+    }
+
     /**
      * Start execution of the console command. This implicitly parses
      * the parameters and dispatches the call to the matching operation.
@@ -337,14 +417,75 @@ abstract public class CliApplication
      * </code>
      * </pre>
      *
+     * A single argument {@code @file} executes the command lines in the
+     * passed file, {@code @-} reads them from standard input.  To pass
+     * a single argument starting with {@code @} double the leading
+     * {@code @}, e.g. {@code @@user} is executed as {@code @user}.
+     * Command lines with more than one argument are passed unmodified.
+     *
      * @param cl The implementation class of the console command.
      * @param argv The unmodified parameter array.
+     * @see #launchBatch(Supplier, Reader)
      */
     static public void launch( Supplier<CliApplication> cl, String[] argv )
     {
+        if ( argv.length == 1 && argv[0].startsWith( BATCH_PREFIX ) )
+        {
+            var argument = argv[0].substring( BATCH_PREFIX.length() );
+
+            // An escaped literal prefix.
+            if ( argument.startsWith( BATCH_PREFIX ) )
+            {
+                launchGuarded( cl, new String[] { argument }, null, null, null );
+                return;
+            }
+
+            launchBatch( cl, argument );
+            return;
+        }
+
+        launchGuarded( cl, argv, null, null, null );
+    }
+
+    /**
+     * Launch a single command line on a new application instance.
+     *
+     * @param cl The implementation class of the console command.
+     * @param argv The command line.
+     * @param in The standard input for the command, {@code null} for
+     * {@link System#in}.
+     * @param out The standard output for the command, {@code null} for
+     * {@link System#out}.
+     * @param err The standard error for the command, {@code null} for
+     * {@link System#err}.
+     * @return {@code true} if the command completed successfully.
+     */
+    static boolean launchGuarded(
+            Supplier<CliApplication> cl,
+            String[] argv,
+            InputStream in,
+            PrintStream out,
+            PrintStream err )
+    {
+        var errStream = err != null ?
+                err :
+                System.err;
+
         try
         {
-            cl.get().launchInstance( argv );
+            var application = cl.get();
+            application._in = in;
+            application._out = out;
+            application._err = err;
+
+            try
+            {
+                return application.launchInstance( argv );
+            }
+            finally
+            {
+                application.flushOut();
+            }
         }
         catch (RuntimeException e)
         {
@@ -353,7 +494,7 @@ abstract public class CliApplication
                 msg = e.getClass().getName();
 
             LOG.log(Level.SEVERE, e.getMessage(), e);
-            e.printStackTrace();
+            e.printStackTrace( errStream );
         }
         catch (Exception e)
         {
@@ -362,7 +503,359 @@ abstract public class CliApplication
                 msg = e.getClass().getName();
 
             LOG.log(Level.FINE, msg, e);
-            System.err.println("Failed: " + msg);
+            errStream.println("Failed: " + msg);
+        }
+
+        return false;
+    }
+
+    /**
+     * A command line consisting of a single argument with this prefix
+     * starts batch mode.  The remainder of the argument is the name of
+     * the batch file, {@code -} for standard input.  A doubled prefix
+     * escapes a literal prefix.
+     */
+    private static final String BATCH_PREFIX = "@";
+
+    /**
+     * Execute the command lines in the passed file.
+     *
+     * @param cl The implementation class of the console command.
+     * @param fileName The file holding the command lines, {@code -} for
+     * standard input.
+     */
+    private static void launchBatch( Supplier<CliApplication> cl, String fileName )
+    {
+        try
+        {
+            if ( fileName.equals( "-" ) )
+            {
+                // Standard input is not closed.
+                launchBatch(
+                        cl,
+                        new InputStreamReader( System.in, Charset.defaultCharset() ) );
+                return;
+            }
+
+            try ( var reader = Files.newBufferedReader(
+                    Paths.get( fileName ),
+                    Charset.defaultCharset() ) )
+            {
+                launchBatch( cl, reader );
+            }
+        }
+        catch ( IOException e )
+        {
+            LOG.log( Level.FINE, e.getMessage(), e );
+            System.err.println( "Failed: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Execute multiple command lines in the same JVM. Each line is split
+     * like a shell command line and dispatched on a new application
+     * instance.  Empty lines and lines starting with '#' are skipped.
+     * The status and execution time of each command line and the total
+     * time are reported on the standard error stream.
+     * <p>
+     * Consecutive lines calling {@link Command#parallel() parallel}
+     * commands are executed concurrently.  Their output is buffered and
+     * written in the order of the lines.
+     * </p>
+     *
+     * @param cl The implementation class of the console command.
+     * @param script The command lines.
+     * @return The number of failed command lines.
+     * @throws IOException If reading the command lines failed.
+     */
+    static public int launchBatch( Supplier<CliApplication> cl, Reader script )
+            throws IOException
+    {
+        return launchBatch(
+                cl,
+                script,
+                Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Execute multiple command lines in the same JVM.  See
+     * {@link #launchBatch(Supplier, Reader)}.
+     *
+     * @param cl The implementation class of the console command.
+     * @param script The command lines.
+     * @param parallelism The maximum number of concurrently executed
+     * commands.
+     * @return The number of failed command lines.
+     * @throws IOException If reading the command lines failed.
+     */
+    static public int launchBatch(
+            Supplier<CliApplication> cl,
+            Reader script,
+            int parallelism )
+        throws IOException
+    {
+        var lines = new LineNumberReader( script );
+
+        var total = new TimeProbe().start();
+
+        try ( var batch = new Batch( cl, parallelism ) )
+        {
+            for ( var line = lines.readLine() ; line != null ; line = lines.readLine() )
+            {
+                var trimmed = line.trim();
+                if ( trimmed.isEmpty() || trimmed.startsWith( "#" ) )
+                    continue;
+
+                batch.execute( lines.getLineNumber(), trimmed );
+            }
+
+            batch.complete();
+
+            total.stop();
+
+            System.err.printf( "%d commands, %d failed, total %s%n",
+                    batch._count,
+                    batch._failed,
+                    new Duration( total.duration() ) );
+
+            return batch._failed;
+        }
+    }
+
+    /**
+     * Check if the command selected by the passed command line is
+     * marked as parallel.
+     *
+     * @param type The implementation class of the console command.
+     * @param argv The command line.
+     * @return {@code true} if the command can be executed concurrently.
+     */
+    private static boolean isParallel( Class<?> type, String[] argv )
+    {
+        var commands =
+                getCached( _commandMapCache, type );
+        var arguments = Arrays.stream( argv )
+                .filter( c -> getNameIfProperty( c ) == null )
+                .toArray( String[]::new );
+
+        if ( arguments.length == 0 )
+            return false;
+
+        var cmdName = arguments[0].toLowerCase();
+
+        var selectedCommand = commands.get(
+                cmdName,
+                arguments.length - 1 );
+
+        if ( selectedCommand == null && commands.getAll( cmdName ).isEmpty() )
+        {
+            selectedCommand = commands.get(
+                    UNNAMED,
+                    arguments.length );
+        }
+
+        return selectedCommand != null && selectedCommand.isParallel();
+    }
+
+    /**
+     * The state of a batch execution.
+     */
+    private static class Batch implements AutoCloseable
+    {
+        private final Supplier<CliApplication> _factory;
+
+        /**
+         * The implementation class, {@code null} if the factory failed.
+         * In this case all lines are executed sequentially.
+         */
+        private final Class<?> _type;
+
+        private final ForkJoinPool _pool;
+
+        /**
+         * The concurrently executed lines in line order.
+         */
+        private final ArrayDeque<BatchLine> _pending =
+                new ArrayDeque<>();
+
+        private int _count;
+        private int _failed;
+
+        Batch( Supplier<CliApplication> factory, int parallelism )
+        {
+            _factory =
+                    factory;
+            _type =
+                    probeType( factory );
+            _pool =
+                    new ForkJoinPool( parallelism );
+        }
+
+        private static Class<?> probeType( Supplier<CliApplication> factory )
+        {
+            try
+            {
+                return factory.get().getClass();
+            }
+            catch ( Exception e )
+            {
+                LOG.log( Level.FINE, e.getMessage(), e );
+                return null;
+            }
+        }
+
+        /**
+         * Execute a command line.  Parallel commands are started and
+         * reported once they and all preceding lines are completed.
+         * Other commands wait for all pending lines and are executed
+         * directly.
+         */
+        void execute( int lineNumber, String line )
+        {
+            var current = new BatchLine(
+                    lineNumber,
+                    line,
+                    StringUtil.splitQuoted( line ) );
+
+            if ( _type != null && isParallel( _type, current._argv ) )
+            {
+                current._task = _pool.submit(
+                        () -> current.execute( _factory, true ) );
+                _pending.add( current );
+                flushCompleted();
+                return;
+            }
+
+            complete();
+
+            current.execute( _factory, false );
+            report( current );
+        }
+
+        /**
+         * Wait for and report all pending lines.
+         */
+        void complete()
+        {
+            while ( ! _pending.isEmpty() )
+            {
+                var head = _pending.remove();
+                head._task.join();
+                report( head );
+            }
+        }
+
+        /**
+         * Report the completed pending lines that are not preceded
+         * by a running line.
+         */
+        private void flushCompleted()
+        {
+            while ( ! _pending.isEmpty() && _pending.peek()._task.isDone() )
+                report( _pending.remove() );
+        }
+
+        private void report( BatchLine line )
+        {
+            line.flush();
+
+            _count++;
+            if ( ! line._success )
+                _failed++;
+
+            System.err.printf( "[%d] %s: %s (%d ms)%n",
+                    line._lineNumber,
+                    line._success ? "ok" : "failed",
+                    line._line,
+                    line._duration );
+        }
+
+        @Override
+        public void close()
+        {
+            _pool.shutdown();
+        }
+    }
+
+    /**
+     * A single line of a batch execution.
+     */
+    private static class BatchLine
+    {
+        private final int _lineNumber;
+        private final String _line;
+        private final String[] _argv;
+
+        /**
+         * The buffered output of a concurrently executed line.
+         */
+        private ByteArrayOutputStream _out;
+        private ByteArrayOutputStream _err;
+
+        private ForkJoinTask<?> _task;
+
+        private boolean _success;
+        private long _duration;
+
+        BatchLine( int lineNumber, String line, String[] argv )
+        {
+            _lineNumber = lineNumber;
+            _line = line;
+            _argv = argv;
+        }
+
+        /**
+         * Execute the line.
+         *
+         * @param factory Creates the application instance.
+         * @param buffered If {@code true} the output is buffered
+         * until {@link #flush()} is called.
+         */
+        void execute( Supplier<CliApplication> factory, boolean buffered )
+        {
+            var probe = new TimeProbe().start();
+
+            if ( buffered )
+            {
+                _out = new ByteArrayOutputStream();
+                _err = new ByteArrayOutputStream();
+
+                try ( var out = new PrintStream( _out );
+                      var err = new PrintStream( _err ) )
+                {
+                    _success = launchGuarded(
+                            factory,
+                            _argv,
+                            InputStream.nullInputStream(),
+                            out,
+                            err );
+                }
+            }
+            else
+            {
+                _success = launchGuarded(
+                        factory,
+                        _argv,
+                        null,
+                        null,
+                        null );
+            }
+
+            _duration = probe.stop().duration();
+        }
+
+        /**
+         * Write the buffered output to the standard streams.
+         */
+        void flush()
+        {
+            if ( _out == null )
+                return;
+
+            System.out.write( _out.toByteArray(), 0, _out.size() );
+            System.out.flush();
+            System.err.write( _err.toByteArray(), 0, _err.size() );
+            System.err.flush();
         }
     }
 
@@ -443,7 +936,7 @@ abstract public class CliApplication
      * Get a map of all commands that allows to access a single command based on
      * its name and argument list.
      */
-    private MultiMap<String, Integer, CommandHolder> getCommandMap(
+    private static MultiMap<String, Integer, CommandHolder> getCommandMap(
             Class<?> targetClass )
     {
         MultiMap<String,Integer,CommandHolder> result =
@@ -457,15 +950,8 @@ abstract public class CliApplication
                     if ( StringUtil.isEmpty( name ) )
                         name = c.getName();
 
-                    for ( Class<?> current : c.getParameterTypes() )
-                    {
-                        Objects.requireNonNull(
-                                _converters.getConverter( current ),
-                                "No mapper for " + current );
-                    }
-
                     Integer numberOfArgs =
-                            Integer.valueOf( c.getParameterTypes().length );
+                            Integer.valueOf( c.getParameterCount() );
 
                     var keyName = name.toLowerCase();
                     // Check if we already have this command with the same parameter
@@ -479,6 +965,7 @@ abstract public class CliApplication
                                 " parameters is not unique.");
                     }
 
+                    // Binds the operation.
                     result.put(
                             keyName,
                             numberOfArgs,
@@ -489,14 +976,12 @@ abstract public class CliApplication
     }
 
     /**
-     * Get a map of all commands that allows to access a single command based on
-     * its name and argument list.
+     * Get a map of all properties that allows to access a single property
+     * based on its name.
      */
-    private Map<String, PropertyHolder> getPropertyMap(
-            Object targetInstance )
+    private static Map<String, PropertyHolder> getPropertyMap(
+            Class<?> targetClass )
     {
-        var targetClass =
-                targetInstance.getClass();
         var result =
                 new HashMap<String, PropertyHolder>();
 
@@ -535,7 +1020,7 @@ abstract public class CliApplication
             // Special handling of implementation or VM errors.
             err( "%s failed.%n",
                     commandName );
-            e.printStackTrace();
+            e.printStackTrace( errStream() );
         }
         else
         {
@@ -562,7 +1047,7 @@ abstract public class CliApplication
         return file;
     }
 
-    private String getEnumDocumentation( Class<?> c )
+    private static String getEnumDocumentation( Class<?> c )
     {
         List<String> enumNames = new ArrayList<>();
 
@@ -621,29 +1106,6 @@ abstract public class CliApplication
         return StringUtil.EMPTY_STRING;
     }
 
-    /**
-     * Convert an argument string to a typed object. Uses
-     * a special mapping for enums and the type map
-     * for all other types.
-     */
-    private static final Object transformArgument(
-            Class<?> targetType,
-            String argument )
-        throws Exception
-    {
-        targetType =
-                Objects.requireNonNull( targetType );
-        argument =
-                Objects.requireNonNull( argument );
-
-        var transformer =
-                Objects.requireNonNull(
-                        _converters.getConverter( targetType ),
-                        "No mapper for " + targetType.getSimpleName() );
-
-        return transformer.convert( argument );
-    }
-
     /**
      * Format the parameters to the standard error stream.
      *
@@ -652,7 +1114,8 @@ abstract public class CliApplication
      */
     protected final void err( String fmt, Object ... argv )
     {
-        System.err.printf( fmt, argv );
+        flushOut();
+        errStream().printf( fmt, argv );
     }
 
     /**
@@ -663,18 +1126,21 @@ abstract public class CliApplication
      */
     protected final void err( String msg )
     {
-        System.err.print( msg );
+        flushOut();
+        errStream().print( msg );
     }
 
     /**
-     * Format the parameters to the standard output stream.
+     * Format the parameters to the standard output stream.  The
+     * output is buffered until the command ends or
+     * {@link #flushOut()} is called.
      *
      * @param fmt The format string.
      * @param argv Format parameters.
      */
     protected final void out( String fmt, Object ... argv )
     {
-        System.out.printf( fmt, argv );
+        outFormatter().format( fmt, argv );
     }
 
     /**
@@ -685,17 +1151,165 @@ abstract public class CliApplication
      */
     protected final void out( String msg )
     {
-        System.out.print( msg );
+        try
+        {
+            outWriter().write( msg );
+        }
+        catch ( IOException e )
+        {
+            // Ignored like in PrintStream.
+            LOG.log( Level.FINE, e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Print a line to the standard output stream.  This does not
+     * parse a format string and is the fastest way to write output.
+     *
+     * @param line The line to print.  A line separator is added.
+     */
+    protected final void outLine( CharSequence line )
+    {
+        try
+        {
+            var w = outWriter();
+            w.append( line );
+            w.write( LINE_SEPARATOR );
+        }
+        catch ( IOException e )
+        {
+            // Ignored like in PrintStream.
+            LOG.log( Level.FINE, e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Write buffered output to the standard output stream.  This is
+     * done automatically when the command ends and before input is
+     * requested or error output is written.
+     */
+    protected final void flushOut()
+    {
+        if ( _outWriter == null )
+            return;
+
+        try
+        {
+            _outWriter.flush();
+        }
+        catch ( IOException e )
+        {
+            LOG.log( Level.FINE, e.getMessage(), e );
+        }
     }
 
     /**
-     * Shorthand for System.in.
+     * Shorthand for System.in.  Buffered output is flushed, so that
+     * prompts are visible.
      *
      * @return The standard input stream.
      */
     protected final InputStream in()
     {
-        return System.in;
+        flushOut();
+
+        return _in != null ?
+                _in :
+                System.in;
+    }
+
+    /**
+     * The size of the output buffer.
+     */
+    private static final int OUT_BUFFER_SIZE = 64 * 1024;
+
+    private static final String LINE_SEPARATOR =
+            System.lineSeparator();
+
+    /**
+     * Buffered standard output.  Created on first use.
+     */
+    private Writer _outWriter;
+
+    private Formatter _outFormatter;
+
+    /**
+     * Access the buffered standard output.  Use this to stream large
+     * results.  Written data is flushed like the output of
+     * {@link #out(String)}.
+     * <p>
+     * The buffered characters are passed to the standard output
+     * stream, which encodes them with its own charset.  Output written
+     * directly to {@link System#out} is not buffered and may appear
+     * before buffered output.  Call {@link #flushOut()} before writing
+     * to {@link System#out} directly.
+     * </p>
+     *
+     * @return The standard output writer.
+     */
+    protected final Writer outWriter()
+    {
+        if ( _outWriter != null )
+            return _outWriter;
+
+        _outWriter = new BufferedWriter(
+                new PrintStreamWriter( _out != null ? _out : System.out ),
+                OUT_BUFFER_SIZE );
+
+        return _outWriter;
+    }
+
+    /**
+     * Writes characters to a print stream, which encodes them using
+     * its charset.
+     */
+    private static class PrintStreamWriter extends Writer
+    {
+        private final PrintStream _target;
+
+        PrintStreamWriter( PrintStream target )
+        {
+            _target = target;
+        }
+
+        @Override
+        public void write( char[] cbuf, int off, int len )
+        {
+            _target.print( new String( cbuf, off, len ) );
+        }
+
+        @Override
+        public void write( String str, int off, int len )
+        {
+            _target.print( str.substring( off, off + len ) );
+        }
+
+        @Override
+        public void flush()
+        {
+            _target.flush();
+        }
+
+        @Override
+        public void close()
+        {
+            flush();
+        }
+    }
+
+    private Formatter outFormatter()
+    {
+        if ( _outFormatter == null )
+            _outFormatter = new Formatter( outWriter() );
+
+        return _outFormatter;
+    }
+
+    private PrintStream errStream()
+    {
+        return _err != null ?
+                _err :
+                System.err;
     }
 
     private static class DefaultCtorReflection<T extends CliApplication>
@@ -722,9 +1336,10 @@ abstract public class CliApplication
     }
 
     /**
-     * Encapsulates a property.
+     * Encapsulates a property.  Instances are shared by all application
+     * instances of an implementation class.
      */
-    private class PropertyHolder implements Comparable<PropertyHolder>
+    private static class PropertyHolder implements Comparable<PropertyHolder>
     {
         private final Field _field;
         private final Property _property;
@@ -746,16 +1361,38 @@ abstract public class CliApplication
             return _field.getName();
         }
 
-        void set( String value )
+        void set( CliApplication self, String value )
                 throws Exception
         {
-            var self = CliApplication.this;
+            Objects.requireNonNull( value );
+
+            // Primitive fields are set without boxing.
+            var type = _field.getType();
+            if ( type == int.class )
+            {
+                _field.setInt( self, _converters.convertInt( value ) );
+                return;
+            }
+            if ( type == long.class )
+            {
+                _field.setLong( self, _converters.convertLong( value ) );
+                return;
+            }
+            if ( type == double.class )
+            {
+                _field.setDouble( self, _converters.convertDouble( value ) );
+                return;
+            }
+
+            // Resolved on each call, so that converters added after
+            // the property map was created are used.
+            var converter = Objects.requireNonNull(
+                    _converters.getConverter( type ),
+                    "No mapper for " + type.getSimpleName() );
 
             _field.set(
                     self,
-                    transformArgument(
-                            _field.getType(),
-                            value ) );
+                    converter.convert( value ) );
         }
 
         boolean isBooleanType()
@@ -796,13 +1433,25 @@ abstract public class CliApplication
     }
 
     /**
-     * Encapsulates a command.
+     * Encapsulates a command.  Instances are shared by all application
+     * instances of an implementation class.
      */
-    private class CommandHolder implements Comparable<CommandHolder>
+    private static class CommandHolder implements Comparable<CommandHolder>
     {
         private final Method _op;
         private final Command _commandAnnotation;
 
+        /**
+         * The parameter types of the command operation.
+         */
+        private final Class<?>[] _parameterTypes;
+
+        /**
+         * The command operation, adapted to receive the instance and
+         * a spread argument array.
+         */
+        private final MethodHandle _handle;
+
         CommandHolder( Method operation )
         {
             _op =
@@ -811,6 +1460,44 @@ abstract public class CliApplication
                     Objects.requireNonNull(
                             _op.getAnnotation( Command.class ),
                             "@Command missing." );
+            _parameterTypes =
+                    _op.getParameterTypes();
+            _handle = makeHandle( _op );
+        }
+
+        /**
+         * Create a handle of type {@code (CliApplication,Object[])Object}.
+         * If the operation is not accessible the handle throws the access
+         * error, so that it is reported when the command is executed and
+         * the remaining commands stay usable.
+         */
+        private MethodHandle makeHandle( Method op )
+        {
+            try
+            {
+                var lookup = op.trySetAccessible() ?
+                        MethodHandles.lookup() :
+                        MethodHandles.publicLookup();
+
+                return lookup.unreflect( op )
+                        .asSpreader( Object[].class, op.getParameterCount() )
+                        .asType( MethodType.methodType(
+                                Object.class,
+                                CliApplication.class,
+                                Object[].class ) );
+            }
+            catch ( IllegalAccessException e )
+            {
+                LOG.warning( "Operation " + op + " is not accessible." );
+
+                return MethodHandles.dropArguments(
+                        MethodHandles.throwException(
+                                Object.class,
+                                IllegalAccessException.class ).bindTo( e ),
+                        0,
+                        CliApplication.class,
+                        Object[].class );
+            }
         }
 
         String getName()
@@ -825,7 +1512,12 @@ abstract public class CliApplication
 
         int getParameterCount()
         {
-            return _op.getParameterCount();
+            return _parameterTypes.length;
+        }
+
+        boolean isParallel()
+        {
+            return _commandAnnotation.parallel();
         }
 
         private String getDescription()
@@ -842,57 +1534,52 @@ abstract public class CliApplication
          * Execute the passed command with the given passed arguments. Each parameter
          * is transformed to the expected type.
          *
-         * @param command
-         *            Command to execute.
+         * @param self
+         *            The application instance to execute the command on.
          * @param argv
          *            List of arguments.
+         * @return {@code true} if the command completed successfully.
          */
-        private void execute( String ... argv )
+        private boolean execute( CliApplication self, String ... argv )
         {
+            if ( argv.length != _parameterTypes.length )
+                throw new AssertionError();
+
             Object[] arguments =
                     new Object[argv.length];
-            Class<?>[] params =
-                    _op.getParameterTypes();
-
-            if ( argv.length != params.length )
-                throw new AssertionError();
 
-            for (int j = 0; j < params.length; j++) try {
-                arguments[j] = transformArgument(
-                        params[j],
-                        argv[j] );
+            for (int j = 0; j < arguments.length; j++) try {
+                // Resolved on each call, so that converters added after
+                // the command map was created are used.
+                var converter = Objects.requireNonNull(
+                        _converters.getConverter( _parameterTypes[j] ),
+                        "No mapper for " + _parameterTypes[j].getSimpleName() );
+                arguments[j] = converter.convert(
+                        Objects.requireNonNull( argv[j] ) );
             } catch ( Exception e ) {
-                err("Parameter %s : ", argv[j]);
+                self.err("Parameter %s : ", argv[j]);
 
                 String msg = e.getMessage();
 
                 if ( StringUtil.isEmpty( msg ) )
                     msg = e.getClass().getSimpleName();
 
-                err( "%s%n", msg );
+                self.err( "%s%n", msg );
 
-                return;
+                return false;
             }
 
             try {
-                final var self = CliApplication.this;
-
-                if ( ! _op.canAccess( self ) )
-                    _op.setAccessible( true );
-
-                _op.invoke(
+                @SuppressWarnings("unused")
+                Object ignored = (Object)_handle.invokeExact(
                         self,
-                        arguments);
+                        arguments );
+                return true;
             }
-            catch ( InvocationTargetException e )
+            catch ( Throwable e )
             {
-                processCommandException( _op.getName(), e.getCause() );
-            }
-            catch ( Exception e )
-            {
-                // A raw exception must come from our implementation,
-                // so we present a less user friendly stacktrace.
-                e.printStackTrace();
+                self.processCommandException( _op.getName(), e );
+                return false;
             }
             finally
             {
@@ -919,7 +1606,7 @@ abstract public class CliApplication
         private String[] getCommandParameterListExt()
         {
             Class<?>[] parameterTypes =
-                    _op.getParameterTypes();
+                    _parameterTypes;
 
             // The old-style command parameter documentation has priority.
             if ( _commandAnnotation.argumentNames().length > 0 )
@@ -0,0 +1,117 @@
+/*
+ * $Id$
+ *
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sends a command line to a {@link CliServer} and forwards the
+ * received output.
+ *
+ * @author Michael Binz
+ */
+public final class CliClient
+{
+    private CliClient()
+    {
+        throw new AssertionError();
+    }
+
+    /**
+     * Execute a command line on a server.
+     *
+     * @param port The port of the server on the loopback interface.
+     * @param argv The command line.
+     * @param out Receives the standard output of the command.
+     * @param err Receives the standard error of the command.
+     * @return The exit status, 0 on success.
+     * @throws IOException In case of a communication error.
+     */
+    public static int execute(
+            int port,
+            String[] argv,
+            OutputStream out,
+            OutputStream err )
+        throws IOException
+    {
+        try ( var socket = new Socket( InetAddress.getLoopbackAddress(), port ) )
+        {
+            var request = new DataOutputStream(
+                    new BufferedOutputStream( socket.getOutputStream() ) );
+            request.writeInt( argv.length );
+            for ( var c : argv )
+            {
+                var bytes = c.getBytes( StandardCharsets.UTF_8 );
+                request.writeInt( bytes.length );
+                request.write( bytes );
+            }
+            request.flush();
+
+            var response = new DataInputStream(
+                    new BufferedInputStream( socket.getInputStream() ) );
+            var buffer = new byte[ 8 * 1024 ];
+
+            while ( true )
+            {
+                byte type = response.readByte();
+                int length = response.readInt();
+
+                if ( type == CliServer.FRAME_EXIT )
+                {
+                    out.flush();
+                    err.flush();
+                    return length;
+                }
+
+                var target = type == CliServer.FRAME_OUT ?
+                        out :
+                        err;
+
+                if ( buffer.length < length )
+                    buffer = new byte[ length ];
+                response.readFully( buffer, 0, length );
+                target.write( buffer, 0, length );
+            }
+        }
+    }
+
+    /**
+     * Arguments are the server port followed by the command line.
+     *
+     * @param argv The command line arguments.
+     */
+    public static void main( String[] argv )
+    {
+        if ( argv.length < 1 )
+        {
+            System.err.println( "Usage: CliClient port [argument...]" );
+            System.exit( 2 );
+        }
+
+        try
+        {
+            System.exit( execute(
+                    Integer.parseInt( argv[0] ),
+                    Arrays.copyOfRange( argv, 1, argv.length ),
+                    System.out,
+                    System.err ) );
+        }
+        catch ( Exception e )
+        {
+            System.err.println( "Failed: " + e.getMessage() );
+            System.exit( 2 );
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * $Id$
+ *
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.application;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.smack.util.JavaUtil;
+
+/**
+ * Serves a {@link CliApplication} on a loopback port.  This keeps a
+ * warm JVM with cached command handlers, so that repeated command
+ * executions do not pay the JVM startup costs.  Command lines are sent
+ * by the {@link CliClient}.  The standard output and error of each
+ * command are sent back to the client in frames.  Output is buffered,
+ * a frame is sent when a buffer is full or flushed, and at the latest
+ * when the command completes.  Standard input is not forwarded,
+ * commands see an empty input stream.
+ * <p>
+ * The server accepts connections only on the loopback interface, but
+ * does not authenticate clients.  Do not use it on multi-user hosts.
+ * </p>
+ *
+ * @author Michael Binz
+ */
+public final class CliServer implements Closeable
+{
+    private static final Logger LOG =
+            Logger.getLogger( CliServer.class.getName() );
+
+    /**
+     * Frame type carrying standard output data.
+     */
+    static final byte FRAME_OUT = 1;
+
+    /**
+     * Frame type carrying standard error data.
+     */
+    static final byte FRAME_ERR = 2;
+
+    /**
+     * Frame type carrying the exit status.  Terminates a response.
+     */
+    static final byte FRAME_EXIT = 3;
+
+    /**
+     * The exit status of a rejected request.
+     */
+    static final int STATUS_INVALID_REQUEST = 2;
+
+    /**
+     * The maximum number of arguments in a request.
+     */
+    static final int MAX_ARGUMENTS = 1024;
+
+    /**
+     * The maximum length of an encoded argument in bytes.
+     */
+    static final int MAX_ARGUMENT_LENGTH = 64 * 1024;
+
+    /**
+     * The maximum length of all encoded arguments in bytes.
+     */
+    static final int MAX_REQUEST_LENGTH = 1024 * 1024;
+
+    /**
+     * The time a client has to send its request.
+     */
+    private static final int REQUEST_TIMEOUT_MS = 30_000;
+
+    private final Supplier<CliApplication> _factory;
+
+    private final ServerSocket _serverSocket;
+
+    private final ExecutorService _workers;
+
+    private final Thread _acceptor;
+
+    /**
+     * Create and start an instance.
+     *
+     * @param factory Creates the application instance for each request.
+     * @param port The port to listen on, 0 selects a free port.
+     * @param workers The maximum number of concurrently executed requests.
+     * @throws IOException If the port cannot be bound.
+     */
+    public CliServer(
+            Supplier<CliApplication> factory,
+            int port,
+            int workers )
+        throws IOException
+    {
+        if ( workers <= 0 )
+            throw new IllegalArgumentException( "workers must be > 0" );
+
+        _factory =
+                Objects.requireNonNull( factory );
+        _serverSocket =
+                new ServerSocket( port, 50, InetAddress.getLoopbackAddress() );
+
+        // Requests beyond the queue capacity are executed on the
+        // acceptor thread, which delays accepting new connections.
+        _workers = new ThreadPoolExecutor(
+                workers,
+                workers,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>( workers * 4 ),
+                new ThreadPoolExecutor.CallerRunsPolicy() );
+
+        _acceptor = new Thread(
+                this::accept,
+                getClass().getSimpleName() );
+        _acceptor.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort()
+    {
+        return _serverSocket.getLocalPort();
+    }
+
+    private void accept()
+    {
+        while ( ! _serverSocket.isClosed() )
+        {
+            try
+            {
+                var socket = _serverSocket.accept();
+                _workers.execute( () -> serve( socket ) );
+            }
+            catch ( SocketException e )
+            {
+                // Closed.
+                return;
+            }
+            catch ( IOException e )
+            {
+                LOG.log( Level.WARNING, e.getMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * Execute a single request.  The request is the number of arguments
+     * followed by the arguments, each as its length and its UTF-8
+     * encoded bytes.  The response is a sequence of frames, each
+     * consisting of a type, the data length and the data.  The final
+     * frame holds the exit status in the length field.
+     */
+    private void serve( Socket socket )
+    {
+        try ( socket )
+        {
+            socket.setSoTimeout( REQUEST_TIMEOUT_MS );
+
+            var request =
+                    new DataInputStream( socket.getInputStream() );
+            var response = new DataOutputStream(
+                    new BufferedOutputStream( socket.getOutputStream() ) );
+
+            String[] argv;
+            try
+            {
+                argv = readRequest( request );
+            }
+            catch ( InvalidRequestException e )
+            {
+                LOG.warning( e.getMessage() );
+                reject( response, e.getMessage() );
+                return;
+            }
+
+            // Commands may run for an arbitrary time.
+            socket.setSoTimeout( 0 );
+
+            try ( var out = new PrintStream( new FrameStream( response, FRAME_OUT ) );
+                  var err = new PrintStream( new FrameStream( response, FRAME_ERR ) ) )
+            {
+                boolean success = CliApplication.launchGuarded(
+                        _factory,
+                        argv,
+                        InputStream.nullInputStream(),
+                        out,
+                        err );
+
+                out.flush();
+                err.flush();
+
+                synchronized ( response )
+                {
+                    response.writeByte( FRAME_EXIT );
+                    response.writeInt( success ? 0 : 1 );
+                    response.flush();
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            LOG.log( Level.FINE, e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Read and validate a request.  The sizes sent by the client are
+     * checked before memory is allocated.
+     *
+     * @return The command line.
+     */
+    private static String[] readRequest( DataInputStream request )
+        throws IOException, InvalidRequestException
+    {
+        int count = request.readInt();
+
+        if ( count < 0 || count > MAX_ARGUMENTS )
+            throw new InvalidRequestException(
+                    "Invalid argument count: " + count );
+
+        var result = new String[ count ];
+        int total = 0;
+
+        for ( int i = 0 ; i < count ; i++ )
+        {
+            int length = request.readInt();
+
+            if ( length < 0 || length > MAX_ARGUMENT_LENGTH )
+                throw new InvalidRequestException(
+                        "Invalid argument length: " + length );
+
+            total += length;
+            if ( total > MAX_REQUEST_LENGTH )
+                throw new InvalidRequestException(
+                        "Request too long." );
+
+            var bytes = new byte[ length ];
+            request.readFully( bytes );
+            result[i] = new String( bytes, StandardCharsets.UTF_8 );
+        }
+
+        return result;
+    }
+
+    /**
+     * Send an error message and the exit status of a rejected request.
+     */
+    private static void reject( DataOutputStream response, String message )
+        throws IOException
+    {
+        var bytes = ( message + System.lineSeparator() ).getBytes(
+                StandardCharsets.UTF_8 );
+
+        response.writeByte( FRAME_ERR );
+        response.writeInt( bytes.length );
+        response.write( bytes );
+        response.writeByte( FRAME_EXIT );
+        response.writeInt( STATUS_INVALID_REQUEST );
+        response.flush();
+    }
+
+    /**
+     * Signals a request that violates the protocol limits.
+     */
+    @SuppressWarnings("serial")
+    private static class InvalidRequestException extends Exception
+    {
+        InvalidRequestException( String message )
+        {
+            super( message );
+        }
+    }
+
+    /**
+     * Stop accepting requests.  Running requests are completed.
+     */
+    @Override
+    public void close()
+    {
+        JavaUtil.force( _serverSocket::close );
+        _workers.shutdown();
+    }
+
+    /**
+     * Writes data as frames of a given type.
+     */
+    private static class FrameStream extends OutputStream
+    {
+        private final DataOutputStream _target;
+        private final byte _type;
+
+        private final byte[] _buffer = new byte[ 8 * 1024 ];
+        private int _count;
+
+        FrameStream( DataOutputStream target, byte type )
+        {
+            _target = target;
+            _type = type;
+        }
+
+        @Override
+        public void write( int b ) throws IOException
+        {
+            if ( _count == _buffer.length )
+                flushBuffer();
+
+            _buffer[ _count++ ] = (byte)b;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException
+        {
+            Objects.checkFromIndexSize( off, len, b.length );
+
+            while ( len > 0 )
+            {
+                if ( _count == _buffer.length )
+                    flushBuffer();
+
+                int count = Math.min( len, _buffer.length - _count );
+                System.arraycopy( b, off, _buffer, _count, count );
+                _count += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void flushBuffer() throws IOException
+        {
+            if ( _count == 0 )
+                return;
+
+            // Each frame is sent immediately.
+            synchronized ( _target )
+            {
+                _target.writeByte( _type );
+                _target.writeInt( _count );
+                _target.write( _buffer, 0, _count );
+                _target.flush();
+            }
+
+            _count = 0;
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            flushBuffer();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            // The socket is closed by the server.
+            flush();
+        }
+    }
+
+    /**
+     * Start a server.  Arguments are the name of the {@link CliApplication}
+     * implementation class, the port and optionally the number of workers.
+     *
+     * @param argv The command line arguments.
+     * @throws Exception In case of an error.
+     */
+    public static void main( String[] argv ) throws Exception
+    {
+        if ( argv.length < 2 || argv.length > 3 )
+        {
+            System.err.println(
+                    "Usage: CliServer className port [workers]" );
+            return;
+        }
+
+        var cl = Class.forName( argv[0] ).asSubclass( CliApplication.class );
+        int port = Integer.parseInt( argv[1] );
+        int workers = argv.length == 3 ?
+                Integer.parseInt( argv[2] ) :
+                Runtime.getRuntime().availableProcessors();
+
+        var server = new CliServer(
+                CliApplication.factory( cl ),
+                port,
+                workers );
+
+        System.err.printf( "%s serving %s on port %d.%n",
+                CliServer.class.getSimpleName(),
+                cl.getName(),
+                server.getPort() );
+    }
+}
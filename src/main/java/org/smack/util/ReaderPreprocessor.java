@@ -0,0 +1,347 @@
+/*
+ * $Id$
+ *
+ * Common.
+ *
+ * Released under Gnu Public License
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+import org.smack.util.StreamPreprocessor.Resolver;
+
+/**
+ * A reader that resolves C-like preprocessor commands.  Supports the
+ * same commands as the {@link StreamPreprocessor} but delivers characters
+ * instead of bytes, so text consumers do not need to decode the
+ * result again.  Line terminators are normalized to
+ * {@link System#lineSeparator()}.
+ *
+ * @author Michael Binz
+ */
+public class ReaderPreprocessor extends Reader
+{
+    private static final String INCLUDE = "#include";
+
+    private static final char[] LINE_SEPARATOR =
+            System.lineSeparator().toCharArray();
+
+    private final Reader _in;
+
+    private final Resolver _resolver;
+
+    /**
+     * Used to decode included resources.
+     */
+    private final Charset _cs;
+
+    /**
+     * The name of the processed resource, may be {@code null}.
+     */
+    private final String _name;
+
+    /**
+     * Holds data read from the underlying reader.
+     */
+    private final char[] _buffer = new char[ 8 * 1024 ];
+    private int _bufferPosition;
+    private int _bufferLimit;
+
+    /**
+     * Set if the last line ended with a carriage return.  A directly
+     * following line feed is skipped.
+     */
+    private boolean _skipLf;
+
+    private boolean _eof;
+
+    /**
+     * The current line without terminator.
+     */
+    private char[] _line = new char[ 128 ];
+    private int _lineLength;
+
+    /**
+     * The read position in the current line.  Positions beyond the
+     * line length address the line separator.
+     */
+    private int _linePosition;
+
+    /**
+     * The line number of the current line.
+     */
+    private int _lineNumber;
+
+    /**
+     * The preprocessor of an active include, otherwise {@code null}.
+     */
+    private ReaderPreprocessor _include;
+
+    /**
+     * Create an instance.
+     *
+     * @param in The reader to process.
+     * @param resolver The resolver used to resolve include directives.
+     * @param cs The character set used to decode included resources.
+     */
+    public ReaderPreprocessor( Reader in, Resolver resolver, Charset cs )
+    {
+        this( in, resolver, cs, null );
+    }
+
+    /**
+     * Create an instance.
+     *
+     * @param in The reader to process.
+     * @param resolver The resolver used to resolve include directives.
+     * @param cs The character set used to decode included resources.
+     * @param name The name of the processed resource.  Reported
+     * by {@link #getName()}, may be {@code null}.
+     */
+    public ReaderPreprocessor(
+            Reader in,
+            Resolver resolver,
+            Charset cs,
+            String name )
+    {
+        _in = Objects.requireNonNull( in );
+        _resolver = Objects.requireNonNull( resolver );
+        _cs = Objects.requireNonNull( cs );
+        _name = name;
+
+        // Mark the line as completely consumed.
+        _linePosition = LINE_SEPARATOR.length;
+    }
+
+    /**
+     * @return The number of the line currently read.  If an include is
+     * active this is the line number in the included resource.
+     */
+    public int getLineNumber()
+    {
+        if ( _include != null )
+            return _include.getLineNumber();
+
+        return _lineNumber;
+    }
+
+    /**
+     * @return The name of the resource currently read.  If an include is
+     * active this is the name of the included resource.
+     */
+    public String getName()
+    {
+        if ( _include != null )
+            return _include.getName();
+
+        return _name;
+    }
+
+    @Override
+    public int read( char[] cbuf, int off, int len ) throws IOException
+    {
+        Objects.checkFromIndexSize( off, len, cbuf.length );
+
+        int count = 0;
+
+        while ( count < len )
+        {
+            if ( _include != null )
+            {
+                int n = _include.read( cbuf, off + count, len - count );
+                if ( n > 0 )
+                {
+                    count += n;
+                    continue;
+                }
+                _include.close();
+                _include = null;
+            }
+
+            if ( _linePosition < _lineLength )
+            {
+                int n = Math.min( len - count, _lineLength - _linePosition );
+                System.arraycopy( _line, _linePosition, cbuf, off + count, n );
+                _linePosition += n;
+                count += n;
+                continue;
+            }
+
+            int separatorPosition = _linePosition - _lineLength;
+            if ( separatorPosition < LINE_SEPARATOR.length )
+            {
+                int n = Math.min(
+                        len - count,
+                        LINE_SEPARATOR.length - separatorPosition );
+                System.arraycopy(
+                        LINE_SEPARATOR, separatorPosition, cbuf, off + count, n );
+                _linePosition += n;
+                count += n;
+                continue;
+            }
+
+            if ( ! nextLine() )
+                return count > 0 ? count : -1;
+
+            processLine();
+        }
+
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if ( _include != null )
+        {
+            _include.close();
+            _include = null;
+        }
+
+        _in.close();
+    }
+
+    /**
+     * Handles a preprocessor command in the current line.
+     */
+    private void processLine() throws IOException
+    {
+        int start = 0;
+        while ( start < _lineLength && Character.isWhitespace( _line[start] ) )
+            start++;
+
+        if ( ! startsWith( start, INCLUDE ) )
+            return;
+
+        var name = StringUtil.trim(
+                new String(
+                        _line,
+                        start + INCLUDE.length(),
+                        _lineLength - start - INCLUDE.length() ).trim(),
+                "\"" );
+
+        _include = new ReaderPreprocessor(
+                new InputStreamReader( _resolver.resolveName( name ), _cs ),
+                _resolver.reposition( name ),
+                _cs,
+                name );
+
+        // The command line is not part of the output.
+        _linePosition = _lineLength + LINE_SEPARATOR.length;
+    }
+
+    private boolean startsWith( int offset, String prefix )
+    {
+        if ( _lineLength - offset < prefix.length() )
+            return false;
+
+        for ( int i = 0 ; i < prefix.length() ; i++ )
+        {
+            if ( _line[ offset + i ] != prefix.charAt( i ) )
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the next line into the line buffer.
+     *
+     * @return {@code false} if the end of input is reached.
+     */
+    private boolean nextLine() throws IOException
+    {
+        _lineLength = 0;
+        _linePosition = 0;
+
+        boolean readAny = false;
+
+        while ( true )
+        {
+            if ( _bufferPosition == _bufferLimit && ! fill() )
+            {
+                if ( readAny )
+                    break;
+
+                // Mark the line as completely consumed.
+                _linePosition = LINE_SEPARATOR.length;
+                return false;
+            }
+
+            if ( _skipLf )
+            {
+                _skipLf = false;
+                if ( _buffer[ _bufferPosition ] == '\n' )
+                {
+                    _bufferPosition++;
+                    continue;
+                }
+            }
+
+            readAny = true;
+
+            int end = _bufferPosition;
+            while ( end < _bufferLimit &&
+                    _buffer[end] != '\n' &&
+                    _buffer[end] != '\r' )
+                end++;
+
+            appendToLine( _bufferPosition, end - _bufferPosition );
+
+            if ( end == _bufferLimit )
+            {
+                _bufferPosition = end;
+                continue;
+            }
+
+            _skipLf = _buffer[end] == '\r';
+            _bufferPosition = end + 1;
+            break;
+        }
+
+        _lineNumber++;
+        return true;
+    }
+
+    private void appendToLine( int offset, int count )
+    {
+        if ( _lineLength + count > _line.length )
+        {
+            var grown = new char[ Math.max( _line.length * 2, _lineLength + count ) ];
+            System.arraycopy( _line, 0, grown, 0, _lineLength );
+            _line = grown;
+        }
+
+        System.arraycopy( _buffer, offset, _line, _lineLength, count );
+        _lineLength += count;
+    }
+
+    private boolean fill() throws IOException
+    {
+        if ( _eof )
+            return false;
+
+        int count;
+        do
+        {
+            count = _in.read( _buffer, 0, _buffer.length );
+        }
+        while ( count == 0 );
+
+        if ( count < 0 )
+        {
+            _eof = true;
+            return false;
+        }
+
+        _bufferPosition = 0;
+        _bufferLimit = count;
+        return true;
+    }
+}
@@ -7,12 +7,14 @@
  */
 package org.smack.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Uses a Stream and resolves C-like preprocessor commands.
@@ -41,6 +43,20 @@ public class StreamPreprocessor extends InputStream{
          * @throws IOException In case of an error.
          */
         Resolver reposition(String name) throws IOException;
+
+        /**
+         * Get a key identifying the resource a name resolves to.  Used to
+         * cache included resources.  Two keys must only be equal if the
+         * resources have the same content.  Resolvers that know the
+         * location of their resources should return the resolved path or
+         * URL, so that cached includes are shared between resolvers.
+         * @param name the name of the resource.
+         * @return The key.  The default is the name qualified by this
+         * resolver.
+         */
+        default Object resourceKey(String name) {
+            return List.of(this, name);
+        }
     }
 
     /**
@@ -58,11 +74,30 @@ public class StreamPreprocessor extends InputStream{
      */
     final private Charset cs;
 
+    /**
+     * Caches the processed content of included resources by
+     * {@link Resolver#resourceKey(String)}.  May be {@code null}.
+     */
+    final private Map<Object,byte[]> includeCache;
+
     /**
      * If this is not null read() will return {@link #nextHierarchy#read()}
      */
     private InputStream currentInputStream = null;
 
+    /**
+     * The encoded data to deliver before reading the next line.  Either
+     * a single line or a cached include.
+     */
+    private byte[] pending = EMPTY;
+
+    /**
+     * The read position in {@link #pending}.
+     */
+    private int pendingPosition = 0;
+
+    private static final byte[] EMPTY = new byte[0];
+
     /**
      * Create an instance based on the platform's default character set.
      * @param is InputStream to process.
@@ -79,31 +114,62 @@ public class StreamPreprocessor extends InputStream{
      * @param cs The character set to use in character transformations.
      */
     public StreamPreprocessor(InputStream is, Resolver res, Charset cs) {
+        this(is,res,cs,null);
+    }
+
+    /**
+     * Create an instance that caches included resources.  The cache
+     * is keyed by {@link Resolver#resourceKey(String)}.  The cache can be shared
+     * between instances, in that case it has to be thread safe if the
+     * instances are used concurrently.
+     * @param is InputStream to process.
+     * @param res The Resolver used to resolve include directives.
+     * @param cs The character set to use in character transformations.
+     * @param includeCache Receives the processed content of included
+     * resources.  If {@code null} no caching is done.
+     */
+    public StreamPreprocessor(InputStream is, Resolver res, Charset cs, Map<Object,byte[]> includeCache) {
         this.cs = cs;
         this.res = res;
+        this.includeCache = includeCache;
         lnr = new LineNumberReader(new InputStreamReader(is,cs));
     }
 
     @Override
     public int read() throws IOException
     {
-        if(currentInputStream != null){
-            int result = currentInputStream.read();
-            if(result != -1){
-                return result;
+        while(true){
+            if(pendingPosition < pending.length){
+                return pending[pendingPosition++] & 0xff;
+            }
+
+            if(currentInputStream != null){
+                int result = currentInputStream.read();
+                if(result != -1){
+                    return result;
+                }
+                currentInputStream.close();
+                currentInputStream = null;
             }
-            currentInputStream.close();
-            currentInputStream = null;
+
+            if(!nextLine())
+                return -1;
         }
+    }
 
+    /**
+     * Read and process the next line.
+     * @return {@code false} if the end of the input is reached.
+     * @throws IOException In case of an error.
+     */
+    private boolean nextLine() throws IOException {
         String currentLineStr = lnr.readLine();
         if(currentLineStr == null)
-            return -1;
+            return false;
         currentLineStr += System.lineSeparator();
 
-        currentInputStream = preProcess(currentLineStr);
-        return currentInputStream.read();
-
+        preProcess(currentLineStr);
+        return true;
     }
 
     /**
@@ -111,21 +177,28 @@ public class StreamPreprocessor extends InputStream{
      *
      * This is the place where you should add a new preprocessor instructions.
      *
+     * Sets either the pending data or the <code>currentInputStream</code>.
+     *
      * @param pPLine the raw line which contains the preprocessor commands(e.g. #Include).
-     * @return The InputStream to read from next.
      *
      * @throws IOException   if the preprocessor instruction is unknown or<br>
      *                       if the preprocessor command execution led to an Exception.
      */
-    private InputStream preProcess(String pPLine) throws IOException {
+    private void preProcess(String pPLine) throws IOException {
         if(pPLine.trim().startsWith("#include")){
-            return pPComandInclude(pPLine);
+            pPComandInclude(pPLine);
+            return;
         }
 //        //add other preprocessor commands here
 //        else if(string.startsWith("#OtherPreProcessorInstructions"){
 //            ppCommandOtherPPAction();
 //        }
-        return new ByteArrayInputStream(pPLine.getBytes(cs));
+        setPending(pPLine.getBytes(cs));
+    }
+
+    private void setPending(byte[] data) {
+        pending = data;
+        pendingPosition = 0;
     }
 
     /**
@@ -134,7 +207,7 @@ public class StreamPreprocessor extends InputStream{
      * @param includeLine the raw line starting with #include (ignoring what is before "#include ").
      * @throws IOException if an I/O Exception occurs while loading the resource.
      */
-    private InputStream pPComandInclude(String includeLine) throws IOException {
+    private void pPComandInclude(String includeLine) throws IOException {
 
         // TODO better use a regular expression finding:
         // <space> # <space> include <space> optional-quoted argument
@@ -146,9 +219,33 @@ public class StreamPreprocessor extends InputStream{
 
         name = StringUtil.trim( name, "\"" );
 
+        if(includeCache != null){
+            Object key = res.resourceKey(name);
+            byte[] cached = includeCache.get(key);
+            if(cached == null){
+                try(InputStream included = openInclude(name)){
+                    cached = included.readAllBytes();
+                }
+                includeCache.put(key, cached);
+            }
+            setPending(cached);
+            return;
+        }
+
+        currentInputStream = openInclude(name);
+    }
+
+    /**
+     * Create a preprocessor for an included resource.
+     *
+     * @param name The name of the included resource.
+     * @return The preprocessor for the included resource.
+     * @throws IOException if the resource cannot be resolved.
+     */
+    private InputStream openInclude(String name) throws IOException {
         InputStream newStream = res.resolveName(name);
         Resolver newResolver = res.reposition(name);
-        return new StreamPreprocessor(newStream, newResolver);
+        return new StreamPreprocessor(newStream, newResolver, cs, includeCache);
     }
 
     @Override
@@ -176,16 +273,37 @@ public class StreamPreprocessor extends InputStream{
     @Override
     public int read( byte[] b, int off, int len ) throws IOException
     {
-        for ( int i = 0 ; i < len ; i++ )
+        Objects.checkFromIndexSize( off, len, b.length );
+
+        int count = 0;
+
+        while ( count < len )
         {
-            int c = read();
+            if ( pendingPosition < pending.length )
+            {
+                int n = Math.min( len - count, pending.length - pendingPosition );
+                System.arraycopy( pending, pendingPosition, b, off + count, n );
+                pendingPosition += n;
+                count += n;
+                continue;
+            }
 
-            if ( c == -1 )
-                return i > 0 ? i : -1;
+            if ( currentInputStream != null )
+            {
+                int n = currentInputStream.read( b, off + count, len - count );
+                if ( n > 0 )
+                {
+                    count += n;
+                    continue;
+                }
+                currentInputStream.close();
+                currentInputStream = null;
+            }
 
-            b[ i+off ] = (byte)c;
+            if ( ! nextLine() )
+                return count > 0 ? count : -1;
         }
 
-        return len;
+        return count;
     }
 }
@@ -9,6 +9,7 @@ package org.smack.util.converters;
 import java.awt.Color;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.Objects;
 
 class ConverterUtils
 {
@@ -65,4 +66,148 @@ class ConverterUtils
             return null;
         }
     }
+
+    /**
+     * Decodes a long like {@link Long#decode(String)} does, without
+     * creating intermediate strings.  Decimal, hexadecimal and octal
+     * numbers with an optional sign are accepted.
+     *
+     * @param s The characters to decode.
+     * @param offset The start of the number.
+     * @param length The length of the number.
+     * @return The decoded value.
+     * @throws NumberFormatException If the characters are not a number.
+     */
+    static long decodeLong( CharSequence s, int offset, int length )
+    {
+        Objects.checkFromIndexSize( offset, length, s.length() );
+
+        if ( length == 0 )
+            throw new NumberFormatException( "Zero length string" );
+
+        int index = offset;
+        int end = offset + length;
+        boolean negative = false;
+
+        char first = s.charAt( index );
+        if ( first == '-' )
+        {
+            negative = true;
+            index++;
+        }
+        else if ( first == '+' )
+            index++;
+
+        int radix = 10;
+
+        if ( startsWith( s, index, end, "0x" ) || startsWith( s, index, end, "0X" ) )
+        {
+            index += 2;
+            radix = 16;
+        }
+        else if ( startsWith( s, index, end, "#" ) )
+        {
+            index++;
+            radix = 16;
+        }
+        else if ( startsWith( s, index, end, "0" ) && end - index > 1 )
+        {
+            index++;
+            radix = 8;
+        }
+
+        if ( startsWith( s, index, end, "-" ) || startsWith( s, index, end, "+" ) )
+            throw new NumberFormatException( "Sign character in wrong position" );
+
+        long magnitude = Long.parseUnsignedLong( s, index, end, radix );
+
+        if ( negative )
+        {
+            if ( Long.compareUnsigned( magnitude, Long.MIN_VALUE ) > 0 )
+                throw outOfRange( s, offset, length );
+            return -magnitude;
+        }
+
+        if ( magnitude < 0 )
+            throw outOfRange( s, offset, length );
+
+        return magnitude;
+    }
+
+    static long decodeLong( CharSequence s )
+    {
+        return decodeLong( s, 0, s.length() );
+    }
+
+    /**
+     * Decodes an int like {@link Integer#decode(String)} does, without
+     * creating intermediate strings.
+     *
+     * @param s The characters to decode.
+     * @param offset The start of the number.
+     * @param length The length of the number.
+     * @return The decoded value.
+     * @throws NumberFormatException If the characters are not a number.
+     */
+    static int decodeInt( CharSequence s, int offset, int length )
+    {
+        long result = decodeLong( s, offset, length );
+
+        if ( result < Integer.MIN_VALUE || result > Integer.MAX_VALUE )
+            throw outOfRange( s, offset, length );
+
+        return (int)result;
+    }
+
+    static int decodeInt( CharSequence s )
+    {
+        return decodeInt( s, 0, s.length() );
+    }
+
+    /**
+     * Parses a double like {@link Double#parseDouble(String)} does.  A
+     * string is only created if the passed characters are not a string
+     * or if only a part of the characters is parsed.
+     *
+     * @param s The characters to parse.
+     * @param offset The start of the number.
+     * @param length The length of the number.
+     * @return The parsed value.
+     * @throws NumberFormatException If the characters are not a number.
+     */
+    static double parseDouble( CharSequence s, int offset, int length )
+    {
+        Objects.checkFromIndexSize( offset, length, s.length() );
+
+        return Double.parseDouble(
+                s.subSequence( offset, offset + length ).toString() );
+    }
+
+    static double parseDouble( CharSequence s )
+    {
+        return parseDouble( s, 0, s.length() );
+    }
+
+    private static boolean startsWith(
+            CharSequence s, int index, int end, String prefix )
+    {
+        if ( end - index < prefix.length() )
+            return false;
+
+        for ( int i = 0 ; i < prefix.length() ; i++ )
+        {
+            if ( s.charAt( index + i ) != prefix.charAt( i ) )
+                return false;
+        }
+
+        return true;
+    }
+
+    private static NumberFormatException outOfRange(
+            CharSequence s, int offset, int length )
+    {
+        return new NumberFormatException( String.format(
+                "Value out of range: \"%s\"",
+                s.subSequence( offset, offset + length ) ) );
+    }
 }
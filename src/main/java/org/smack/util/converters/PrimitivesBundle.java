@@ -57,15 +57,15 @@ public class PrimitivesBundle extends StringConverterExtension
         registry.put( Byte.class, Byte::decode );
         registry.put( short.class, Short::decode );
         registry.put( Short.class, Short::decode );
-        registry.put( int.class, Integer::decode );
-        registry.put( Integer.class, Integer::decode );
-        registry.put( long.class, Long::decode );
-        registry.put( Long.class, Long::decode );
+        registry.putInt( ConverterUtils::decodeInt );
+        registry.put( Integer.class, ConverterUtils::decodeInt );
+        registry.putLong( ConverterUtils::decodeLong );
+        registry.put( Long.class, ConverterUtils::decodeLong );
         registry.put( float.class, Float::parseFloat );
         registry.put( Float.class, Float::parseFloat );
 
-        registry.put( double.class, Double::parseDouble );
-        registry.put( Double.class, Double::parseDouble );
+        registry.putDouble( ConverterUtils::parseDouble );
+        registry.put( Double.class, ConverterUtils::parseDouble );
         // char ...
 
         // The remaining converters supported by default.
@@ -0,0 +1,148 @@
+/*
+ * $Id$
+ *
+ * Unpublished work.
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util.converters;
+
+import java.util.Objects;
+
+import org.smack.util.StringUtil;
+
+/**
+ * Iterates the elements of a whitespace delimited and quoted string
+ * without creating intermediate strings.  The elements are the same as
+ * returned by {@link StringUtil#splitQuoted(String)}.  An element is
+ * accessed as a range of the character sequence returned by
+ * {@link #chars()}.  This is the tokenized sequence itself, except for
+ * elements that combine quoted and unquoted parts like {@code a"b c"}.
+ *
+ * @author Michael Binz
+ */
+final class QuotedTokenizer
+{
+    private static final char QUOTE_CHAR = '\"';
+
+    private final CharSequence _string;
+    private final int _end;
+    private int _index;
+
+    private int _start;
+    private int _length;
+
+    /**
+     * Holds the current element if it is not a range of the tokenized
+     * sequence, otherwise {@code null}.
+     */
+    private StringBuilder _builder;
+
+    QuotedTokenizer( CharSequence string )
+    {
+        this( string, 0, string.length() );
+    }
+
+    QuotedTokenizer( CharSequence string, int from, int to )
+    {
+        Objects.checkFromToIndex( from, to, string.length() );
+
+        _string = string;
+        _index = from;
+        _end = to;
+    }
+
+    /**
+     * Move to the next element.
+     *
+     * @return {@code false} if no more elements are available.
+     */
+    boolean next()
+    {
+        _start = _index;
+        _length = 0;
+        _builder = null;
+
+        boolean inQuotes = false;
+
+        while ( _index < _end )
+        {
+            char c = _string.charAt( _index++ );
+
+            if ( c == QUOTE_CHAR )
+            {
+                inQuotes = ! inQuotes;
+
+                // End of the quoted sequence.
+                if ( ! inQuotes )
+                    return true;
+
+                if ( _length == 0 )
+                    _start = _index;
+                else if ( _builder == null )
+                    toBuilder();
+
+                continue;
+            }
+
+            if ( ! inQuotes && Character.isWhitespace( c ) )
+            {
+                if ( _length > 0 )
+                    return true;
+                continue;
+            }
+
+            append( c );
+        }
+
+        return _length > 0 || inQuotes;
+    }
+
+    /**
+     * @return The characters holding the current element.
+     */
+    CharSequence chars()
+    {
+        return _builder != null ? _builder : _string;
+    }
+
+    /**
+     * @return The start of the current element in {@link #chars()}.
+     */
+    int start()
+    {
+        return _builder != null ? 0 : _start;
+    }
+
+    /**
+     * @return The length of the current element.
+     */
+    int length()
+    {
+        return _length;
+    }
+
+    /**
+     * @return The current element as a string.
+     */
+    @Override
+    public String toString()
+    {
+        return chars().subSequence( start(), start() + _length ).toString();
+    }
+
+    private void append( char c )
+    {
+        if ( _builder != null )
+            _builder.append( c );
+        else if ( _length == 0 )
+            _start = _index - 1;
+
+        _length++;
+    }
+
+    private void toBuilder()
+    {
+        _builder = new StringBuilder( _length + 16 );
+        _builder.append( _string, _start, _start + _length );
+    }
+}
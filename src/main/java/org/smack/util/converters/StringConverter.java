@@ -6,13 +6,26 @@
  */
 package org.smack.util.converters;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.ServiceLoader;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 import org.smack.util.ReflectionUtil;
 import org.smack.util.ServiceManager;
@@ -30,6 +43,14 @@ public final class StringConverter
     private final Logger LOG = Logger.getLogger(
             StringConverter.class.getName() );
 
+    private static final MethodHandles.Lookup PUBLIC_LOOKUP =
+            MethodHandles.publicLookup();
+
+    /**
+     * The minimum input length in characters for parallel conversion.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
     @FunctionalInterface
     public interface Converter<F,T>
     {
@@ -37,8 +58,108 @@ public final class StringConverter
             throws Exception;
     }
 
-    private final HashMap<Class<?>, Converter<String, ?>> _registry =
-            new HashMap<>();
+    /**
+     * Converts characters to an int without boxing.
+     */
+    @FunctionalInterface
+    public interface IntConverter
+    {
+        int convert( CharSequence s, int offset, int length )
+            throws Exception;
+    }
+
+    /**
+     * Converts characters to a long without boxing.
+     */
+    @FunctionalInterface
+    public interface LongConverter
+    {
+        long convert( CharSequence s, int offset, int length )
+            throws Exception;
+    }
+
+    /**
+     * Converts characters to a double without boxing.
+     */
+    @FunctionalInterface
+    public interface DoubleConverter
+    {
+        double convert( CharSequence s, int offset, int length )
+            throws Exception;
+    }
+
+    /**
+     * An immutable snapshot of the registered converters.  Modifications
+     * copy the snapshot and publish the copy, guarded by
+     * {@link #_writeLock}.
+     */
+    private volatile Map<Class<?>, Converter<String, ?>> _registry =
+            Map.of();
+
+    private final Object _writeLock =
+            new Object();
+
+    /**
+     * Incremented by each registration.  This invalidates all resolved
+     * converters, since a registration may also affect synthesized
+     * converters, e.g. arrays of the registered type.  Written under
+     * {@link #_writeLock}.
+     */
+    private volatile int _generation;
+
+    /**
+     * A converter resolved in a generation.
+     */
+    private static final class Resolved
+    {
+        final int _generation;
+
+        /**
+         * {@code null} if no converter is available.
+         */
+        final Converter<String, ?> _converter;
+
+        Resolved( int generation, Converter<String, ?> converter )
+        {
+            _generation = generation;
+            _converter = converter;
+        }
+    }
+
+    /**
+     * The resolved converters, attached to the target classes.  Holds
+     * registered as well as synthesized converters and missing ones.  A
+     * lookup is a single read after the first resolution as long as no
+     * converter is registered.  Since the entries are owned by the
+     * classes they unload with their class loaders.
+     */
+    private final ClassValue<Resolved> _converters =
+            new ClassValue<>()
+            {
+                @Override
+                protected Resolved computeValue( Class<?> type )
+                {
+                    // Read before the registry, so that a concurrent
+                    // registration marks the result stale.
+                    int generation = _generation;
+
+                    var result = _registry.get( type );
+
+                    // This may recursively request other converters, e.g. for
+                    // array components.
+                    if ( result == null )
+                        result = synthesize( type );
+
+                    return new Resolved( generation, result );
+                }
+            };
+
+    private volatile IntConverter _intConverter =
+            ConverterUtils::decodeInt;
+    private volatile LongConverter _longConverter =
+            ConverterUtils::decodeLong;
+    private volatile DoubleConverter _doubleConverter =
+            ConverterUtils::parseDouble;
 
     /**
      * Create an instance.  Use with {@link ServiceManager} to get the common
@@ -63,23 +184,62 @@ public final class StringConverter
     }
 
     /**
+     * Add a converter.  A converter for {@code int}, {@code long} or
+     * {@code double} is also used by the respective primitive conversion
+     * like {@link #convertInt(CharSequence, int, int)}.
+     *
      * @param converter A converter to add to the list of known converters.
      */
+    @SuppressWarnings("unchecked")
     public <T> void put( Class<T> cl, Converter<String, T> f )
     {
         Objects.requireNonNull( cl );
         Objects.requireNonNull( f );
 
+        synchronized ( _writeLock )
+        {
+            register( cl, f );
+
+            if ( cl == int.class )
+            {
+                var c = (Converter<String, Integer>)f;
+                _intConverter = (s, offset, length) ->
+                    c.convert( s.subSequence( offset, offset + length ).toString() );
+            }
+            else if ( cl == long.class )
+            {
+                var c = (Converter<String, Long>)f;
+                _longConverter = (s, offset, length) ->
+                    c.convert( s.subSequence( offset, offset + length ).toString() );
+            }
+            else if ( cl == double.class )
+            {
+                var c = (Converter<String, Double>)f;
+                _doubleConverter = (s, offset, length) ->
+                    c.convert( s.subSequence( offset, offset + length ).toString() );
+            }
+        }
+    }
+
+    private <T> void register( Class<T> cl, Converter<String, T> f )
+    {
         LOG.info( "Adding rc for: " + cl );
 
-        // Directly ask the hash table.  The outbound containsKey
-        // triggers creation of entries.
-        if ( _registry.containsKey( cl ) )
-            LOG.warning( "Duplicate resource converter for " + cl + "." );
+        synchronized ( _writeLock )
+        {
+            // Directly ask the registry.  The outbound containsKey
+            // triggers creation of entries.
+            if ( _registry.containsKey( cl ) )
+                LOG.warning( "Duplicate resource converter for " + cl + "." );
+
+            var registry = new HashMap<>( _registry );
+            registry.put( cl, f );
+            _registry = Map.copyOf( registry );
 
-        _registry.put(
-                cl,
-                f );
+            // Invalidate the resolved converters, the next lookup finds
+            // the new one.
+            _generation++;
+        }
     }
 
     /**
@@ -91,7 +251,15 @@ public final class StringConverter
     @SuppressWarnings("unchecked")
     public <T> Converter<String, T> getConverter( Class<T> cl )
     {
-        return (Converter<String,T>)_registry.computeIfAbsent( cl, this::synthesize );
+        var result = _converters.get( cl );
+
+        while ( result._generation != _generation )
+        {
+            _converters.remove( cl );
+            result = _converters.get( cl );
+        }
+
+        return (Converter<String,T>)result._converter;
     }
 
     /**
@@ -103,42 +271,558 @@ public final class StringConverter
      * on the converter.
      * @throws IllegalArgumentException In case of conversion failure.
      */
-    @SuppressWarnings("unchecked")
     public <T> T convert( Class<T> cl, String s )
     {
-        if ( ! containsKey( cl ) )
+        return convert( requireConverter( cl ), cl, s );
+    }
+
+    private <T> Converter<String, T> requireConverter( Class<T> cl )
+    {
+        var converter = getConverter( cl );
+
+        if ( converter == null )
             throw new IllegalArgumentException(
                     "No resource converter found for type: " + cl );
+
+        return converter;
+    }
+
+    private static <T> T convert( Converter<String, T> converter, Class<?> cl, String s )
+    {
+        try
+        {
+            return converter.convert( s );
+        }
+        catch ( Exception e )
+        {
+            throw conversionFailed( s, 0, s.length(), cl, e );
+        }
+    }
+
+    /**
+     * @param f The converter used by {@link #convertInt(CharSequence, int, int)}.
+     * Also registered as the converter for {@code int}.
+     */
+    public void putInt( IntConverter f )
+    {
+        Objects.requireNonNull( f );
+
+        synchronized ( _writeLock )
+        {
+            register( int.class, s -> f.convert( s, 0, s.length() ) );
+            _intConverter = f;
+        }
+    }
+
+    /**
+     * @param f The converter used by {@link #convertLong(CharSequence, int, int)}.
+     * Also registered as the converter for {@code long}.
+     */
+    public void putLong( LongConverter f )
+    {
+        Objects.requireNonNull( f );
+
+        synchronized ( _writeLock )
+        {
+            register( long.class, s -> f.convert( s, 0, s.length() ) );
+            _longConverter = f;
+        }
+    }
+
+    /**
+     * @param f The converter used by {@link #convertDouble(CharSequence, int, int)}.
+     * Also registered as the converter for {@code double}.
+     */
+    public void putDouble( DoubleConverter f )
+    {
+        Objects.requireNonNull( f );
+
+        synchronized ( _writeLock )
+        {
+            register( double.class, s -> f.convert( s, 0, s.length() ) );
+            _doubleConverter = f;
+        }
+    }
+
+    /**
+     * Convert characters to an int.  The default conversion accepts
+     * the formats of {@link Integer#decode(String)}.
+     *
+     * @param s The characters to convert.
+     * @param offset The start of the value.
+     * @param length The length of the value.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public int convertInt( CharSequence s, int offset, int length )
+    {
+        try
+        {
+            return _intConverter.convert( s, offset, length );
+        }
+        catch ( Exception e )
+        {
+            throw conversionFailed( s, offset, length, int.class, e );
+        }
+    }
+
+    /**
+     * Convert characters to an int.
+     *
+     * @param s The characters to convert.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public int convertInt( CharSequence s )
+    {
+        return convertInt( s, 0, s.length() );
+    }
+
+    /**
+     * Convert characters to a long.  The default conversion accepts
+     * the formats of {@link Long#decode(String)}.
+     *
+     * @param s The characters to convert.
+     * @param offset The start of the value.
+     * @param length The length of the value.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public long convertLong( CharSequence s, int offset, int length )
+    {
         try
         {
-            return (T)_registry.get( cl ).convert( s );
+            return _longConverter.convert( s, offset, length );
         }
-        catch ( IllegalArgumentException e )
+        catch ( Exception e )
+        {
+            throw conversionFailed( s, offset, length, long.class, e );
+        }
+    }
+
+    /**
+     * Convert characters to a long.
+     *
+     * @param s The characters to convert.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public long convertLong( CharSequence s )
+    {
+        return convertLong( s, 0, s.length() );
+    }
+
+    /**
+     * Convert characters to a double.  The default conversion accepts
+     * the formats of {@link Double#parseDouble(String)}.
+     *
+     * @param s The characters to convert.
+     * @param offset The start of the value.
+     * @param length The length of the value.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public double convertDouble( CharSequence s, int offset, int length )
+    {
+        try
         {
-            throw e;
+            return _doubleConverter.convert( s, offset, length );
         }
         catch ( Exception e )
         {
-            throw new IllegalArgumentException(
-                    String.format(
-                            "Cannot convert '%s' to %s: %s",
-                            s,
-                            cl.getName(),
-                            e.getMessage()),
-                    e );
+            throw conversionFailed( s, offset, length, double.class, e );
         }
     }
 
+    /**
+     * Convert characters to a double.
+     *
+     * @param s The characters to convert.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public double convertDouble( CharSequence s )
+    {
+        return convertDouble( s, 0, s.length() );
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to an int array.
+     * The elements are split as by {@link StringUtil#splitQuoted(String)}
+     * and converted by {@link #convertInt(CharSequence, int, int)}.
+     *
+     * @param s The characters to convert.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public int[] convertIntArray( CharSequence s )
+    {
+        return convertIntArray( s, false );
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to an int array.
+     *
+     * @param s The characters to convert.
+     * @param parallel If {@code true} large inputs are converted in
+     * parallel on the common fork join pool.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public int[] convertIntArray( CharSequence s, boolean parallel )
+    {
+        var chunks = parallel ? chunks( s ) : null;
+
+        if ( chunks == null )
+            return intArray( s, 0, s.length() );
+
+        var parts = new int[chunks.length - 1][];
+        IntStream.range( 0, parts.length ).parallel().forEach(
+                i -> parts[i] = intArray( s, chunks[i], chunks[i+1] ) );
+
+        var result = new int[ Arrays.stream( parts ).mapToInt( c -> c.length ).sum() ];
+        int position = 0;
+        for ( var c : parts )
+        {
+            System.arraycopy( c, 0, result, position, c.length );
+            position += c.length;
+        }
+        return result;
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to a long array.
+     *
+     * @param s The characters to convert.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     * @see #convertIntArray(CharSequence)
+     */
+    public long[] convertLongArray( CharSequence s )
+    {
+        return convertLongArray( s, false );
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to a long array.
+     *
+     * @param s The characters to convert.
+     * @param parallel If {@code true} large inputs are converted in
+     * parallel on the common fork join pool.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public long[] convertLongArray( CharSequence s, boolean parallel )
+    {
+        var chunks = parallel ? chunks( s ) : null;
+
+        if ( chunks == null )
+            return longArray( s, 0, s.length() );
+
+        var parts = new long[chunks.length - 1][];
+        IntStream.range( 0, parts.length ).parallel().forEach(
+                i -> parts[i] = longArray( s, chunks[i], chunks[i+1] ) );
+
+        var result = new long[ Arrays.stream( parts ).mapToInt( c -> c.length ).sum() ];
+        int position = 0;
+        for ( var c : parts )
+        {
+            System.arraycopy( c, 0, result, position, c.length );
+            position += c.length;
+        }
+        return result;
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to a double array.
+     *
+     * @param s The characters to convert.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     * @see #convertIntArray(CharSequence)
+     */
+    public double[] convertDoubleArray( CharSequence s )
+    {
+        return convertDoubleArray( s, false );
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to a double array.
+     *
+     * @param s The characters to convert.
+     * @param parallel If {@code true} large inputs are converted in
+     * parallel on the common fork join pool.
+     * @return The conversion result.
+     * @throws IllegalArgumentException In case of conversion failure.
+     */
+    public double[] convertDoubleArray( CharSequence s, boolean parallel )
+    {
+        var chunks = parallel ? chunks( s ) : null;
+
+        if ( chunks == null )
+            return doubleArray( s, 0, s.length() );
+
+        var parts = new double[chunks.length - 1][];
+        IntStream.range( 0, parts.length ).parallel().forEach(
+                i -> parts[i] = doubleArray( s, chunks[i], chunks[i+1] ) );
+
+        var result = new double[ Arrays.stream( parts ).mapToInt( c -> c.length ).sum() ];
+        int position = 0;
+        for ( var c : parts )
+        {
+            System.arraycopy( c, 0, result, position, c.length );
+            position += c.length;
+        }
+        return result;
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to a list.
+     *
+     * @param <T> The element type.
+     * @param cl The element class.
+     * @param s The characters to convert.
+     * @return A modifiable list of the converted elements.
+     * @throws IllegalArgumentException In case of conversion failure.
+     * @see #convertIntArray(CharSequence)
+     */
+    public <T> List<T> convertList( Class<T> cl, CharSequence s )
+    {
+        return convertAll( cl, s, new ArrayList<>() );
+    }
+
+    /**
+     * Convert a whitespace delimited and quoted string to a set.
+     *
+     * @param <T> The element type.
+     * @param cl The element class.
+     * @param s The characters to convert.
+     * @return A modifiable set of the converted elements in the order
+     * of the input.
+     * @throws IllegalArgumentException In case of conversion failure.
+     * @see #convertIntArray(CharSequence)
+     */
+    public <T> Set<T> convertSet( Class<T> cl, CharSequence s )
+    {
+        return convertAll( cl, s, new LinkedHashSet<>() );
+    }
+
+    private <T, C extends Collection<T>> C convertAll(
+            Class<T> cl, CharSequence s, C result )
+    {
+        var converter = requireConverter( cl );
+
+        var tokens = new QuotedTokenizer( s );
+        while ( tokens.next() )
+            result.add( convert( converter, cl, tokens.toString() ) );
+
+        return result;
+    }
+
+    private int[] intArray( CharSequence s, int from, int to )
+    {
+        var result = new int[16];
+        int count = 0;
+
+        var tokens = new QuotedTokenizer( s, from, to );
+        while ( tokens.next() )
+        {
+            if ( count == result.length )
+                result = Arrays.copyOf( result, count * 2 );
+
+            result[count++] = convertInt(
+                    tokens.chars(), tokens.start(), tokens.length() );
+        }
+
+        return count == result.length ?
+                result :
+                Arrays.copyOf( result, count );
+    }
+
+    private long[] longArray( CharSequence s, int from, int to )
+    {
+        var result = new long[16];
+        int count = 0;
+
+        var tokens = new QuotedTokenizer( s, from, to );
+        while ( tokens.next() )
+        {
+            if ( count == result.length )
+                result = Arrays.copyOf( result, count * 2 );
+
+            result[count++] = convertLong(
+                    tokens.chars(), tokens.start(), tokens.length() );
+        }
+
+        return count == result.length ?
+                result :
+                Arrays.copyOf( result, count );
+    }
+
+    private double[] doubleArray( CharSequence s, int from, int to )
+    {
+        var result = new double[16];
+        int count = 0;
+
+        var tokens = new QuotedTokenizer( s, from, to );
+        while ( tokens.next() )
+        {
+            if ( count == result.length )
+                result = Arrays.copyOf( result, count * 2 );
+
+            result[count++] = convertDouble(
+                    tokens.chars(), tokens.start(), tokens.length() );
+        }
+
+        return count == result.length ?
+                result :
+                Arrays.copyOf( result, count );
+    }
+
+    /**
+     * Split a large input into chunks for parallel conversion.  Chunks
+     * end at whitespace, so no element is split.
+     *
+     * @param s The input.
+     * @return The chunk boundaries, starting with zero and ending with
+     * the input length.  {@code null} if the input is too small or
+     * contains quotes, since a quoted element may contain whitespace.
+     */
+    private static int[] chunks( CharSequence s )
+    {
+        int length = s.length();
+
+        if ( length < PARALLEL_THRESHOLD )
+            return null;
+
+        for ( int i = 0 ; i < length ; i++ )
+        {
+            if ( s.charAt( i ) == '\"' )
+                return null;
+        }
+
+        int size = Math.max(
+                PARALLEL_THRESHOLD / 4,
+                length / (4 * ForkJoinPool.getCommonPoolParallelism()) );
+
+        var result = new ArrayList<Integer>();
+        result.add( 0 );
+
+        int position = size;
+        while ( position < length )
+        {
+            while ( position < length && ! Character.isWhitespace( s.charAt( position ) ) )
+                position++;
+
+            result.add( position );
+            position += size;
+        }
+
+        if ( result.get( result.size() - 1 ) != length )
+            result.add( length );
+
+        return result.stream().mapToInt( Integer::intValue ).toArray();
+    }
+
+    private static IllegalArgumentException conversionFailed(
+            CharSequence s, int offset, int length, Class<?> cl, Exception e )
+    {
+        if ( e instanceof IllegalArgumentException )
+            return (IllegalArgumentException)e;
+
+        return new IllegalArgumentException(
+                String.format(
+                        "Cannot convert '%s' to %s: %s",
+                        s.subSequence( offset, offset + length ),
+                        cl.getName(),
+                        e.getMessage()),
+                e );
+    }
+
     private <T> Converter<String, T> synthesizeEnum( Class<T> cl )
     {
         LOG.info( "Synthesize enum for: " + cl );
-        return s -> ReflectionUtil.getEnumElement( cl, s );
+
+        var constants = new HashMap<String, T>();
+        for ( var c : cl.getEnumConstants() )
+            constants.putIfAbsent( c.toString(), c );
+
+        return s -> {
+            var result = constants.get( s );
+
+            if ( result != null )
+                return result;
+
+            // Generates the error message.
+            return ReflectionUtil.getEnumElement( cl, s );
+        };
     }
 
-    private <T> Converter<String, T> synthesizeStringCtor( Class<T> cl, Constructor<T> ctor )
+    /**
+     * Creates a converter that calls the passed method handle.
+     *
+     * @param handle A handle taking a single string argument and returning
+     * an instance of the target class.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Converter<String, T> synthesizeHandle( MethodHandle handle )
     {
-        LOG.info( "Synthesize string ctor for: " + cl );
-        return s -> ctor.newInstance( s );
+        var mh = handle.asType(
+                MethodType.methodType( Object.class, String.class ) );
+
+        return s -> {
+            try
+            {
+                return (T)mh.invokeExact( s );
+            }
+            catch ( Exception | Error e )
+            {
+                throw e;
+            }
+            catch ( Throwable e )
+            {
+                throw new UndeclaredThrowableException( e );
+            }
+        };
+    }
+
+    /**
+     * Find a public constructor taking a string.
+     */
+    private static MethodHandle findStringCtor( Class<?> cl )
+    {
+        if ( Modifier.isAbstract( cl.getModifiers() ) )
+            return null;
+
+        try
+        {
+            return PUBLIC_LOOKUP.findConstructor(
+                    cl,
+                    MethodType.methodType( void.class, String.class ) );
+        }
+        catch ( NoSuchMethodException | IllegalAccessException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Find a public static factory method taking a single argument
+     * and returning the passed class.
+     */
+    private static MethodHandle findFactory( Class<?> cl, String name, Class<?> argument )
+    {
+        try
+        {
+            return PUBLIC_LOOKUP.findStatic(
+                    cl,
+                    name,
+                    MethodType.methodType( cl, argument ) );
+        }
+        catch ( NoSuchMethodException | IllegalAccessException e )
+        {
+            return null;
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -146,30 +830,44 @@ public final class StringConverter
     {
         LOG.info( "Synthesize array for: " + cl );
 
+        var componentType =
+                cl.getComponentType();
+
+        if ( componentType == int.class )
+            return s -> (T)convertIntArray( s );
+        if ( componentType == long.class )
+            return s -> (T)convertLongArray( s );
+        if ( componentType == double.class )
+            return s -> (T)convertDoubleArray( s );
+
         var componentConverter =
-                getConverter( cl.getComponentType() );
+                getConverter( componentType );
 
         return s -> {
-            String[] split = StringUtil.splitQuoted( s );
+            var elements = new ArrayList<Object>();
+
+            var tokens = new QuotedTokenizer( s );
+            while ( tokens.next() )
+                elements.add( componentConverter.convert( tokens.toString() ) );
 
             var result = Array.newInstance(
-                    cl.getComponentType(), split.length );
+                    componentType, elements.size() );
 
-            int idx = 0;
-            for ( String c : split )
-            {
-                Array.set(
-                        result,
-                        idx++,
-                        componentConverter.convert( c ) );
-            }
+            if ( ! componentType.isPrimitive() )
+                return (T)elements.toArray( (Object[])result );
+
+            for ( int i = 0 ; i < elements.size() ; i++ )
+                Array.set( result, i, elements.get( i ) );
 
             return (T)result;
         };
     }
 
     /**
-     * Synthesizes missing converters.
+     * Synthesizes missing converters.  Supported are enums, arrays of
+     * convertible types and classes offering a public string constructor,
+     * a static {@code valueOf(String)} or a static
+     * {@code parse(CharSequence)} factory, checked in this order.
      *
      * @param <T>
      * @param cl
@@ -183,9 +881,19 @@ public final class StringConverter
         if ( cl.isArray() && getConverter( cl.getComponentType() ) != null )
             return synthesizeArray( cl );
 
-        var stringCtor = ReflectionUtil.getConstructor( cl, String.class );
-        if ( stringCtor != null )
-            return synthesizeStringCtor( cl, stringCtor );
+        if ( cl.isPrimitive() )
+            return null;
+
+        var handle = findStringCtor( cl );
+        if ( handle == null )
+            handle = findFactory( cl, "valueOf", String.class );
+        if ( handle == null )
+            handle = findFactory( cl, "parse", CharSequence.class );
+        if ( handle != null )
+        {
+            LOG.info( "Synthesize method handle for: " + cl );
+            return synthesizeHandle( handle );
+        }
 
         return null;
     }
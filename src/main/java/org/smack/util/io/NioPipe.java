@@ -4,11 +4,24 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.channels.Channels;
+import java.nio.ByteBuffer;
 import java.nio.channels.Pipe;
+import java.nio.channels.Pipe.SinkChannel;
+import java.nio.channels.Pipe.SourceChannel;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * A simple pipe.  Write to the write end, read from the read end.
+ * <p>
+ * The buffer size defines the size of the direct buffers used for
+ * transferring data through the underlying channels.  The capacity of
+ * the channel pipe itself is defined by the operating system.
+ * <p>
+ * In addition to the stream ends the channels can be accessed directly,
+ * and producers can transfer pooled direct buffers by using
+ * {@link #acquireBuffer()}, {@link #send(ByteBuffer)},
+ * {@link #receive()} and {@link #releaseBuffer(ByteBuffer)}.
  *
  * @version $Rev: 305 $
  * @author Michael Binz
@@ -20,13 +33,148 @@ public final class NioPipe
 
     private final Pipe _pipe;
 
+    private final int _bufferSize;
+
+    /**
+     * The pool of direct transfer buffers.
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> _bufferPool =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * The pipe's write end.
+     */
+    private final OutputStream _writeEnd;
+
+    /**
+     * The pipe's read end.
+     */
+    private final ReadEnd _readEnd;
+
+    /**
+     * The write end implementation.
+     */
+    private final class WriteEnd extends OutputStream
+    {
+        private final ByteBuffer _buffer =
+                ByteBuffer.allocateDirect( _bufferSize );
+
+        @Override
+        public synchronized void write( int b ) throws IOException
+        {
+            _buffer.clear();
+            _buffer.put( (byte)b );
+            _buffer.flip();
+            writeFully( _buffer );
+        }
+
+        @Override
+        public synchronized void write( byte[] b, int off, int len )
+                throws IOException
+        {
+            Objects.checkFromIndexSize( off, len, b.length );
+
+            while ( len > 0 )
+            {
+                int count = Math.min( len, _buffer.capacity() );
+
+                _buffer.clear();
+                _buffer.put( b, off, count );
+                _buffer.flip();
+                writeFully( _buffer );
+
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            _pipe.sink().close();
+        }
+    }
+
+    /**
+     * The read end implementation.
+     */
+    private final class ReadEnd extends InputStream
+    {
+        private final ByteBuffer _buffer =
+                ByteBuffer.allocateDirect( _bufferSize ).flip();
+
+        /**
+         * Ensure that the buffer holds data.
+         *
+         * @return {@code false} if the end of stream is reached.
+         */
+        private boolean fill() throws IOException
+        {
+            if ( _buffer.hasRemaining() )
+                return true;
+
+            // A closed pipe reports the end of stream.
+            if ( ! _pipe.source().isOpen() )
+                return false;
+
+            _buffer.clear();
+            int count = _pipe.source().read( _buffer );
+            _buffer.flip();
+
+            return count > 0;
+        }
+
+        @Override
+        public synchronized int read() throws IOException
+        {
+            if ( ! fill() )
+                return -1;
+
+            // Mask to a byte.
+            return _buffer.get() & 0xff;
+        }
+
+        @Override
+        public synchronized int read( byte[] b, int off, int len )
+                throws IOException
+        {
+            Objects.checkFromIndexSize( off, len, b.length );
+
+            if ( len == 0 )
+                return 0;
+            if ( ! fill() )
+                return -1;
+
+            int count = Math.min( len, _buffer.remaining() );
+            _buffer.get( b, off, count );
+            return count;
+        }
+
+        @Override
+        public synchronized int available()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            _pipe.source().close();
+        }
+    }
+
     /**
      * Create an instance.
      *
-     * @param bufferSize The size of the pipe's internal buffer.
+     * @param bufferSize The size of the pipe's transfer buffers.
      */
     public NioPipe( int bufferSize )
     {
+        if ( bufferSize <= 0 )
+            throw new IllegalArgumentException( "bufferSize must be > 0" );
+
+        _bufferSize = bufferSize;
+
         try
         {
             _pipe = Pipe.open();
@@ -35,6 +183,9 @@ public final class NioPipe
         {
             throw new InternalError( e.toString() );
         }
+
+        _writeEnd = new WriteEnd();
+        _readEnd = new ReadEnd();
     }
 
     /**
@@ -53,7 +204,7 @@ public final class NioPipe
     @Override
     public OutputStream getWriteEnd()
     {
-        return Channels.newOutputStream( _pipe.sink() );
+        return _writeEnd;
     }
 
     /**
@@ -64,7 +215,124 @@ public final class NioPipe
     @Override
     public InputStream getReadEnd()
     {
-        return Channels.newInputStream( _pipe.source() );
+        return _readEnd;
+    }
+
+    /**
+     * Get the channel of the pipe's write end.  Do not mix writes on
+     * the channel with writes on the write end stream.
+     *
+     * @return The sink channel.
+     */
+    public SinkChannel getSinkChannel()
+    {
+        return _pipe.sink();
+    }
+
+    /**
+     * Get the channel of the pipe's read end.  Do not mix reads on
+     * the channel with reads on the read end stream.
+     *
+     * @return The source channel.
+     */
+    public SourceChannel getSourceChannel()
+    {
+        return _pipe.source();
+    }
+
+    /**
+     * Get a cleared direct buffer from the pipe's buffer pool.  The buffer
+     * has the configured buffer size.  Pass it to {@link #send(ByteBuffer)}
+     * or {@link #releaseBuffer(ByteBuffer)} when done.
+     *
+     * @return A direct buffer.
+     */
+    public ByteBuffer acquireBuffer()
+    {
+        var result = _bufferPool.poll();
+
+        if ( result == null )
+            return ByteBuffer.allocateDirect( _bufferSize );
+
+        return result.clear();
+    }
+
+    /**
+     * Return a buffer to the pipe's buffer pool.  The buffer must not
+     * be used by the caller afterwards.
+     *
+     * @param buffer A buffer received from {@link #acquireBuffer()} or
+     * {@link #receive()}.
+     */
+    public void releaseBuffer( ByteBuffer buffer )
+    {
+        if ( buffer.isDirect() && buffer.capacity() == _bufferSize )
+            _bufferPool.offer( buffer );
+    }
+
+    /**
+     * Write the remaining content of the passed buffer to the pipe and
+     * return the buffer to the pool.
+     *
+     * @param buffer A flipped buffer received from {@link #acquireBuffer()}.
+     * @throws IOException If the pipe is closed.
+     */
+    public void send( ByteBuffer buffer ) throws IOException
+    {
+        synchronized ( _writeEnd )
+        {
+            writeFully( buffer );
+        }
+
+        releaseBuffer( buffer );
+    }
+
+    /**
+     * Read the next available data from the pipe into a pooled buffer.
+     * Data already buffered by the read end stream is returned first.
+     * Blocks until data is available.  Pass the buffer to
+     * {@link #releaseBuffer(ByteBuffer)} when done.
+     *
+     * @return A flipped buffer holding the data, {@code null} if the
+     * end of stream is reached.
+     * @throws IOException If the pipe is closed.
+     */
+    public ByteBuffer receive() throws IOException
+    {
+        var result = acquireBuffer();
+
+        int count;
+        synchronized ( _readEnd )
+        {
+            var buffered = _readEnd._buffer;
+
+            if ( buffered.hasRemaining() )
+            {
+                count = Math.min( result.remaining(), buffered.remaining() );
+                result.put( buffered.slice().limit( count ) );
+                buffered.position( buffered.position() + count );
+            }
+            else if ( ! _pipe.source().isOpen() )
+                count = -1;
+            else
+                count = _pipe.source().read( result );
+        }
+
+        if ( count < 0 )
+        {
+            releaseBuffer( result );
+            return null;
+        }
+
+        return result.flip();
+    }
+
+    private void writeFully( ByteBuffer buffer ) throws IOException
+    {
+        var sink = _pipe.sink();
+
+        while ( buffer.hasRemaining() )
+            sink.write( buffer );
     }
 
     /**
@@ -8,16 +8,27 @@
 package org.smack.util.io;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.util.Arrays;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.jdesktop.util.InterruptibleThread;
 
 /**
  * An output stream that decouples the writing thread from the thread that
  * forwards the data to the passed target stream.
+ * <p>
+ * Written data is collected in a bounded number of pooled chunks.  Small
+ * writes are coalesced into the most recently queued chunk.  The forwarding
+ * thread takes all queued chunks at once and passes them to the target
+ * in a single write.  Forwarding is done either by a dedicated thread or
+ * by tasks running on a shared {@link Executor}.
  *
  * @version $Rev$
  * @author Michael Binz
@@ -25,6 +36,50 @@ import org.jdesktop.util.InterruptibleThread;
 final public class OutputStreamForwarder
     extends OutputStream
 {
+    /**
+     * Defines the behavior if all chunks are in use.
+     */
+    public enum Backpressure
+    {
+        /**
+         * The writing thread blocks until the forwarding thread
+         * made room.
+         */
+        BLOCK,
+        /**
+         * The writing thread waits while the forwarding thread makes
+         * progress.  The write operation throws an {@link IOException}
+         * if the forwarding thread terminated or did not make room
+         * within {@link OutputStreamForwarder#FAIL_TIMEOUT_MS}.
+         */
+        FAIL
+    };
+
+    /**
+     * The size of a single data chunk.
+     */
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * The time in milliseconds a write waits for the forwarding thread
+     * to make room if the backpressure is {@link Backpressure#FAIL}.
+     */
+    public static final long FAIL_TIMEOUT_MS = 1000;
+
+    /**
+     * A pooled data buffer.
+     */
+    private static final class Chunk
+    {
+        final byte[] _data = new byte[ CHUNK_SIZE ];
+        int _length;
+
+        int free()
+        {
+            return _data.length - _length;
+        }
+    }
+
     /**
      * The target output stream.
      */
@@ -37,77 +92,381 @@ final public class OutputStreamForwarder
     volatile private IOException _failed;
 
     /**
-     * The queue that holds the data packets to forward.
+     * Guards the queue, the pool and the state fields below.
+     */
+    private final Object _lock = new Object();
+
+    /**
+     * The chunks holding data to forward.
+     */
+    private final ArrayDeque<Chunk> _outgoing;
+
+    /**
+     * The free chunks.
+     */
+    private final ArrayDeque<Chunk> _pool;
+
+    /**
+     * The maximum number of chunks.
+     */
+    private final int _capacity;
+
+    /**
+     * The number of chunks allocated so far.
+     */
+    private int _allocated;
+
+    /**
+     * {@code true} while the forwarding thread writes to the target.
+     */
+    private boolean _forwarding;
+
+    /**
+     * Incremented each time the forwarding thread returns chunks to
+     * the pool.
+     */
+    private long _released;
+
+    private boolean _closed;
+
+    private final Backpressure _backpressure;
+
+    /**
+     * The executor running the forwarding tasks.  {@code null} if a
+     * dedicated thread is used.
      */
-    private final BlockingQueue<byte[]> _outgoing;
+    private final Executor _executor;
 
     /**
-     * Create an instance.
+     * {@code true} if a forwarding task is submitted to the executor
+     * and not yet finished.  Always {@code true} if data is queued.
+     */
+    private boolean _scheduled;
+
+    /**
+     * {@code true} if a forwarding task has to be submitted after the
+     * current write operation placed its data.
+     */
+    private boolean _schedulePending;
+
+    /**
+     * Create an instance.  The data is forwarded by a dedicated thread.
      *
      * @param target The target output stream receiving incoming data.
+     * @param capacity The maximum number of data chunks held.
+     * @param backpressure The behavior if all data chunks are in use.
+     */
+    public OutputStreamForwarder(
+            OutputStream target,
+            int capacity,
+            Backpressure backpressure )
+    {
+        this( target, capacity, backpressure, null );
+    }
+
+    /**
+     * Create an instance that fails writes if all data chunks are
+     * in use.  The data is forwarded by a dedicated thread.
+     *
+     * @param target The target output stream receiving incoming data.
+     * @param capacity The maximum number of data chunks held.
      */
     public OutputStreamForwarder( OutputStream target, int capacity )
+    {
+        this( target, capacity, Backpressure.FAIL );
+    }
+
+    /**
+     * Create an instance that forwards the data in tasks submitted to the
+     * passed executor.  A task is only submitted if data is available and
+     * terminates when all data is forwarded, so a small shared pool can
+     * serve many forwarders.  At most one task per forwarder runs at a
+     * time, so the data order is kept.
+     *
+     * @param target The target output stream receiving incoming data.
+     * @param capacity The maximum number of data chunks held.
+     * @param backpressure The behavior if all data chunks are in use.
+     * @param executor The executor running the forwarding tasks.  Not
+     * shut down when the forwarder is closed.
+     */
+    public OutputStreamForwarder(
+            OutputStream target,
+            int capacity,
+            Backpressure backpressure,
+            Executor executor )
     {
         if ( null == target )
             throw new NullPointerException();
-
-        _outgoing = new ArrayBlockingQueue<byte[]>( capacity );
+        if ( capacity <= 0 )
+            throw new IllegalArgumentException( "capacity must be > 0" );
 
         _target = target;
+        _capacity = capacity;
+        _backpressure = Objects.requireNonNull( backpressure );
+        _outgoing = new ArrayDeque<>( capacity );
+        _pool = new ArrayDeque<>( capacity );
+        _executor = executor;
+
+        if ( _executor != null )
+        {
+            _dataPumpThread = null;
+            return;
+        }
 
         _dataPumpThread = new InterruptibleThread(
-                _dataPump,
+                _dataPump::runThread,
                 getClass().getSimpleName(),
                 true );
         _dataPumpThread.start();
     }
 
     /**
-     * The thread forwarding the data.
+     * The thread forwarding the data.  {@code null} if an executor is used.
      */
     private final InterruptibleThread _dataPumpThread;
 
     /**
      * The actual forwarding algorithm.
      */
-    private final Runnable _dataPump = new Runnable()
+    private final DataPump _dataPump = new DataPump();
+
+    private final class DataPump
     {
-        @Override
-        public void run()
+        private final List<Chunk> _taken = new ArrayList<>();
+
+        private byte[] _gather = new byte[ CHUNK_SIZE ];
+
+        /**
+         * The loop of the dedicated forwarding thread.
+         */
+        void runThread()
         {
-            while ( ! Thread.currentThread().isInterrupted() )
-                try
+            try
+            {
+                while ( ! Thread.currentThread().isInterrupted() )
                 {
-                    _target.write( _outgoing.take() );
+                    synchronized ( _lock )
+                    {
+                        while ( _outgoing.isEmpty() )
+                            _lock.wait();
+                    }
+
+                    if ( ! forward() )
+                        return;
                 }
-                catch ( IOException e )
+            }
+            catch ( InterruptedException e )
+            {
+                return;
+            }
+        }
+
+        /**
+         * The forwarding task submitted to the executor.  Runs until
+         * the queue is empty.
+         */
+        void runTask()
+        {
+            while ( true )
+            {
+                synchronized ( _lock )
                 {
-                    _failed = e;
+                    if ( _outgoing.isEmpty() )
+                    {
+                        _scheduled = false;
+                        return;
+                    }
+                }
+
+                if ( ! forward() )
                     return;
+            }
+        }
+
+        /**
+         * Forward all queued chunks.
+         *
+         * @return {@code false} if the target failed.
+         */
+        private boolean forward()
+        {
+            try
+            {
+                int total = take();
+
+                if ( _taken.size() == 1 )
+                {
+                    _target.write( _taken.get( 0 )._data, 0, total );
                 }
-                catch ( InterruptedException e )
+                else
                 {
-                    return;
+                    if ( _gather.length < total )
+                        _gather = new byte[ total ];
+
+                    int position = 0;
+                    for ( var c : _taken )
+                    {
+                        System.arraycopy(
+                                c._data, 0, _gather, position, c._length );
+                        position += c._length;
+                    }
+
+                    _target.write( _gather, 0, total );
                 }
+
+                release();
+                return true;
+            }
+            catch ( IOException e )
+            {
+                _failed = e;
+                release();
+                return false;
+            }
         }
-    };
 
-    /* (non-Javadoc)
-     * @see java.io.OutputStream#write(byte[])
+        /**
+         * Take all queued chunks.
+         *
+         * @return The number of bytes taken.
+         */
+        private int take()
+        {
+            synchronized ( _lock )
+            {
+                int result = 0;
+                for ( var c : _outgoing )
+                {
+                    _taken.add( c );
+                    result += c._length;
+                }
+                _outgoing.clear();
+                _forwarding = true;
+
+                return result;
+            }
+        }
+
+        /**
+         * Return the taken chunks to the pool.
+         */
+        private void release()
+        {
+            synchronized ( _lock )
+            {
+                for ( var c : _taken )
+                {
+                    c._length = 0;
+                    _pool.push( c );
+                }
+                _taken.clear();
+                _forwarding = false;
+                _released++;
+
+                _lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get a chunk with free space at the end of the queue.  Called with
+     * the lock held.
+     *
+     * @return The chunk to write to.
      */
-    @Override
-    public void write( byte[] b ) throws IOException
+    private Chunk tail() throws IOException
     {
-        if ( _failed != null )
-            throw _failed;
+        while ( true )
+        {
+            if ( _failed != null )
+                throw _failed;
+            if ( _closed )
+                throw new IOException( "Stream closed." );
+
+            var result = _outgoing.peekLast();
+            if ( result != null && result.free() > 0 )
+                return result;
+
+            result = _pool.poll();
+            if ( result == null && _allocated < _capacity )
+            {
+                result = new Chunk();
+                _allocated++;
+            }
+
+            if ( result != null )
+            {
+                _outgoing.add( result );
+                if ( _executor != null && ! _scheduled )
+                    _schedulePending = true;
+                _lock.notifyAll();
+                return result;
+            }
+
+            try
+            {
+                if ( _backpressure == Backpressure.FAIL )
+                    awaitRelease();
+                else
+                    _lock.wait();
+            }
+            catch ( InterruptedException e )
+            {
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * Wait until the forwarding thread returns chunks to the pool, the
+     * stream fails or is closed.  Called with the lock held.
+     *
+     * @throws IOException If the forwarding thread terminated or did not
+     * return chunks within {@link #FAIL_TIMEOUT_MS}.
+     */
+    private void awaitRelease() throws IOException, InterruptedException
+    {
+        long released = _released;
+        long deadline = System.nanoTime() +
+                TimeUnit.MILLISECONDS.toNanos( FAIL_TIMEOUT_MS );
+
+        while ( released == _released && _failed == null && ! _closed )
+        {
+            long remaining = deadline - System.nanoTime();
+
+            if ( remaining <= 0 ||
+                    ( _dataPumpThread != null && ! _dataPumpThread.isAlive() ) )
+                throw new IOException( "Pipe broken -- no consumer." );
+
+            TimeUnit.NANOSECONDS.timedWait( _lock, remaining );
+        }
+    }
+
+    /**
+     * Submit a forwarding task if the last write queued data for an idle
+     * forwarder.  Called with the lock held after the data is placed, so
+     * that a task never sees a partially written chunk.  If the executor
+     * rejects the task the queued data cannot be forwarded, so the
+     * forwarder fails.
+     */
+    private void schedule() throws IOException
+    {
+        if ( ! _schedulePending )
+            return;
+
+        _schedulePending = false;
+        _scheduled = true;
 
         try
         {
-            _outgoing.add( b.clone() );
+            _executor.execute( _dataPump::runTask );
         }
-        catch ( IllegalStateException e )
+        catch ( RejectedExecutionException e )
         {
-            throw new IOException( "Pipe broken -- no consumer." );
+            _scheduled = false;
+            _failed = new IOException( "Forwarding task rejected.", e );
+            _lock.notifyAll();
+            throw _failed;
         }
     }
 
@@ -117,55 +476,92 @@ final public class OutputStreamForwarder
     @Override
     public void write( byte[] b, int off, int len ) throws IOException
     {
-        if ( _failed != null )
-            throw _failed;
+        Objects.checkFromIndexSize( off, len, b.length );
 
-        try
-        {
-            _outgoing.add( Arrays.copyOfRange( b, off, len ) );
-        }
-        catch ( IllegalStateException e )
+        synchronized ( _lock )
         {
-            throw new IOException( "Pipe broken -- no consumer." );
+            while ( len > 0 )
+            {
+                var chunk = tail();
+
+                int count = Math.min( len, chunk.free() );
+                System.arraycopy( b, off, chunk._data, chunk._length, count );
+                chunk._length += count;
+
+                off += count;
+                len -= count;
+
+                schedule();
+            }
         }
     }
 
     @Override
     public void write( int b ) throws IOException
     {
-        if ( _failed != null )
-            throw _failed;
-
-        try
+        synchronized ( _lock )
         {
-            _outgoing.add( new byte[] { (byte)b } );
-        }
-        catch ( IllegalStateException e )
-        {
-            throw new IOException( "Pipe broken -- no consumer." );
+            var chunk = tail();
+
+            chunk._data[ chunk._length++ ] = (byte)b;
+
+            schedule();
         }
     }
 
-    /* (non-Javadoc)
-     * @see java.io.OutputStream#flush()
+    /**
+     * Waits until all written data has been passed to the target stream,
+     * then flushes the target.
      */
     @Override
     public void flush() throws IOException
     {
+        synchronized ( _lock )
+        {
+            while ( _failed == null && ( _forwarding || ! _outgoing.isEmpty() ) )
+            {
+                try
+                {
+                    _lock.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
         if ( _failed != null )
             throw _failed;
 
         _target.flush();
     }
 
-    /* (non-Javadoc)
-     * @see java.io.OutputStream#close()
+    /**
+     * Forwards pending data, then closes the target stream.
      */
     @Override
     public void close() throws IOException
     {
-        _dataPumpThread.interrupt();
-        _target.flush();
-        _target.close();
+        synchronized ( _lock )
+        {
+            if ( _closed )
+                return;
+        }
+
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            synchronized ( _lock )
+            {
+                _closed = true;
+            }
+            if ( _dataPumpThread != null )
+                _dataPumpThread.interrupt();
+            _target.close();
+        }
     }
 }
@@ -11,9 +11,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.Objects;
 
 /**
  * A simple pipe.  Write to the write end, read from the read end.
+ * <p>
+ * By default the pipe can be shared by multiple writing and reading
+ * threads.  If the pipe is created in lock-free mode it is backed by a
+ * ring buffer that allows exactly one writing and one reading thread, in
+ * exchange offering bulk transfers without monitor handoffs.
  *
  * @version $Id$
  * @author Michael Binz
@@ -25,6 +31,11 @@ public final class PowerPipe
 
     private final byte[] _buffer;
 
+    /**
+     * The ring buffer used in lock-free mode, otherwise {@code null}.
+     */
+    private final RingBuffer _ring;
+
     private int _currentWritePosition = 0;
     private int _currentReadPosition = 0;
 
@@ -146,18 +157,100 @@ public final class PowerPipe
         };
     };
 
+    /**
+     * The write end in lock-free mode.
+     */
+    private final OutputStream _ringWriteEnd = new OutputStream()
+    {
+        @Override
+        public void write( int b ) throws IOException
+        {
+            _ring.write( b );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException
+        {
+            Objects.checkFromIndexSize( off, len, b.length );
+
+            _ring.write( b, off, len );
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            // A close propagates to both ends.
+            PowerPipe.this.close();
+        };
+    };
+
+    /**
+     * The read end in lock-free mode.
+     */
+    private final InputStream _ringReadEnd = new InputStream()
+    {
+        @Override
+        public int read() throws IOException
+        {
+            return _ring.read();
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException
+        {
+            Objects.checkFromIndexSize( off, len, b.length );
+
+            return _ring.read( b, off, len );
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return _ring.available();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            // A close propagates to both ends.
+            PowerPipe.this.close();
+        };
+    };
+
     /**
      * Create an instance.
      *
      * @param bufferSize The size of the pipe's internal buffer.
+     * @param lockFree If {@code true} the pipe supports only a single
+     * writing and a single reading thread, but uses a lock-free ring
+     * buffer.  The buffer size is rounded up to the next power of two.
      */
-    public PowerPipe( int bufferSize )
+    public PowerPipe( int bufferSize, boolean lockFree )
     {
         if ( bufferSize <= 0 )
             throw new IllegalArgumentException( "bufferSize must be > 0" );
 
-        // Allocate one larger since our invariant requires that.
-        _buffer = new byte[ bufferSize+1 ];
+        if ( lockFree )
+        {
+            _buffer = null;
+            _ring = new RingBuffer( bufferSize );
+        }
+        else
+        {
+            // Allocate one larger since our invariant requires that.
+            _buffer = new byte[ bufferSize+1 ];
+            _ring = null;
+        }
+    }
+
+    /**
+     * Create an instance.
+     *
+     * @param bufferSize The size of the pipe's internal buffer.
+     */
+    public PowerPipe( int bufferSize )
+    {
+        this( bufferSize, false );
     }
 
     /**
@@ -176,7 +269,7 @@ public final class PowerPipe
     @Override
     public OutputStream getWriteEnd()
     {
-        return _writeEnd;
+        return _ring != null ? _ringWriteEnd : _writeEnd;
     }
 
     /**
@@ -187,7 +280,7 @@ public final class PowerPipe
     @Override
     public InputStream getReadEnd()
     {
-        return _readEnd;
+        return _ring != null ? _ringReadEnd : _readEnd;
     }
 
     /**
@@ -229,6 +322,12 @@ public final class PowerPipe
 
         _closed = true;
 
+        if ( _ring != null )
+        {
+            _ring.close();
+            return;
+        }
+
         // Ensure wake-up and termination of all waiting threads.
         synchronized ( _writeEnd )
         {
@@ -0,0 +1,322 @@
+/*
+ * $Id$
+ *
+ * Smack io
+ *
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free byte ring buffer for exactly one writing and one reading
+ * thread.  The capacity is a power of two so that positions are mapped
+ * to buffer indices by masking.  The read and write sequences are padded
+ * to live on separate cache lines.  A blocked side parks and is unparked
+ * by the opposite side.
+ *
+ * @author Michael Binz
+ */
+final class RingBuffer
+{
+    /**
+     * Padding preceding a sequence value.
+     */
+    @SuppressWarnings("unused")
+    private static abstract class LhsPadding
+    {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    /**
+     * The sequence value.
+     */
+    private static abstract class Value extends LhsPadding
+    {
+        protected volatile long _value;
+    }
+
+    /**
+     * A sequence that does not share its cache line with other
+     * frequently written data.
+     */
+    @SuppressWarnings("unused")
+    private static final class Sequence extends Value
+    {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        long get()
+        {
+            return _value;
+        }
+
+        void set( long value )
+        {
+            _value = value;
+        }
+    }
+
+    private final byte[] _buffer;
+
+    private final int _mask;
+
+    /**
+     * The position of the next byte to read.  Written only by the reader.
+     */
+    private final Sequence _head = new Sequence();
+
+    /**
+     * The position of the next byte to write.  Written only by the writer.
+     */
+    private final Sequence _tail = new Sequence();
+
+    private volatile Thread _parkedReader;
+    private volatile Thread _parkedWriter;
+
+    private volatile boolean _closed = false;
+
+    /**
+     * Create an instance.
+     *
+     * @param minimumCapacity The minimum number of bytes the buffer can
+     * hold.  The actual capacity is the next power of two.
+     */
+    RingBuffer( int minimumCapacity )
+    {
+        if ( minimumCapacity <= 0 )
+            throw new IllegalArgumentException( "minimumCapacity must be > 0" );
+        if ( minimumCapacity > 1 << 30 )
+            throw new IllegalArgumentException( "minimumCapacity too large." );
+
+        int capacity =
+                Integer.highestOneBit( minimumCapacity );
+        if ( capacity < minimumCapacity )
+            capacity <<= 1;
+
+        _buffer = new byte[ capacity ];
+        _mask = capacity - 1;
+    }
+
+    /**
+     * @return The capacity of the buffer.
+     */
+    int capacity()
+    {
+        return _buffer.length;
+    }
+
+    /**
+     * @return The number of bytes that can be read without blocking.
+     */
+    int available()
+    {
+        return (int)(_tail.get() - _head.get());
+    }
+
+    /**
+     * Write the passed bytes.  Blocks until all bytes are written.
+     *
+     * @param b The data.
+     * @param off The offset of the first byte to write.
+     * @param len The number of bytes to write.
+     * @throws IOException If the buffer got closed.
+     */
+    void write( byte[] b, int off, int len ) throws IOException
+    {
+        long tail = _tail.get();
+
+        while ( len > 0 )
+        {
+            int free = awaitFree( tail );
+
+            int count = Math.min( free, len );
+            int index = (int)tail & _mask;
+            int firstSpan = Math.min( count, _buffer.length - index );
+
+            System.arraycopy( b, off, _buffer, index, firstSpan );
+            if ( firstSpan < count )
+                System.arraycopy( b, off + firstSpan, _buffer, 0, count - firstSpan );
+
+            tail += count;
+            off += count;
+            len -= count;
+
+            _tail.set( tail );
+            unpark( _parkedReader );
+        }
+    }
+
+    /**
+     * Write a single byte.  Blocks until the byte is written.
+     *
+     * @param b The byte to write.
+     * @throws IOException If the buffer got closed.
+     */
+    void write( int b ) throws IOException
+    {
+        long tail = _tail.get();
+
+        awaitFree( tail );
+
+        _buffer[ (int)tail & _mask ] = (byte)b;
+
+        _tail.set( tail + 1 );
+        unpark( _parkedReader );
+    }
+
+    /**
+     * Read into the passed array.  Blocks until at least one byte is
+     * available.
+     *
+     * @param b The target array.
+     * @param off The offset of the first byte to receive.
+     * @param len The maximum number of bytes to read.
+     * @return The number of bytes read or -1 if the buffer is closed.
+     * @throws IOException If the reading thread got interrupted.
+     */
+    int read( byte[] b, int off, int len ) throws IOException
+    {
+        if ( len == 0 )
+            return 0;
+
+        long head = _head.get();
+
+        int available = awaitAvailable( head );
+        if ( available < 0 )
+            return -1;
+
+        int count = Math.min( available, len );
+        int index = (int)head & _mask;
+        int firstSpan = Math.min( count, _buffer.length - index );
+
+        System.arraycopy( _buffer, index, b, off, firstSpan );
+        if ( firstSpan < count )
+            System.arraycopy( _buffer, 0, b, off + firstSpan, count - firstSpan );
+
+        _head.set( head + count );
+        unpark( _parkedWriter );
+
+        return count;
+    }
+
+    /**
+     * Read a single byte.  Blocks until a byte is available.
+     *
+     * @return The byte read or -1 if the buffer is closed.
+     * @throws IOException If the reading thread got interrupted.
+     */
+    int read() throws IOException
+    {
+        long head = _head.get();
+
+        if ( awaitAvailable( head ) < 0 )
+            return -1;
+
+        int result = _buffer[ (int)head & _mask ];
+
+        _head.set( head + 1 );
+        unpark( _parkedWriter );
+
+        // Mask to a byte.
+        return result & 0xff;
+    }
+
+    /**
+     * Close the buffer.  Wakes up parked threads.
+     */
+    void close()
+    {
+        _closed = true;
+
+        unpark( _parkedReader );
+        unpark( _parkedWriter );
+    }
+
+    /**
+     * Wait until there is space for writing.
+     *
+     * @param tail The current write position.
+     * @return The number of free bytes.
+     * @throws IOException If the buffer got closed or the writing thread
+     * got interrupted.
+     */
+    private int awaitFree( long tail ) throws IOException
+    {
+        while ( true )
+        {
+            if ( _closed )
+                throw new IOException( "Pipe broken." );
+
+            int free = _buffer.length - (int)(tail - _head.get());
+            if ( free > 0 )
+                return free;
+
+            _parkedWriter = Thread.currentThread();
+            try
+            {
+                // Re-check after publishing the parked thread, the reader
+                // may have consumed data in between.
+                if ( _closed || _buffer.length > (int)(tail - _head.get()) )
+                    continue;
+
+                LockSupport.park( this );
+            }
+            finally
+            {
+                _parkedWriter = null;
+            }
+
+            if ( Thread.interrupted() )
+                throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Wait until there is data to read.
+     *
+     * @param head The current read position.
+     * @return The number of available bytes or -1 if the buffer is closed.
+     * @throws IOException If the reading thread got interrupted.
+     */
+    private int awaitAvailable( long head ) throws IOException
+    {
+        while ( true )
+        {
+            if ( _closed )
+                return -1;
+
+            int available = (int)(_tail.get() - head);
+            if ( available > 0 )
+                return available;
+
+            _parkedReader = Thread.currentThread();
+            try
+            {
+                // Re-check after publishing the parked thread, the writer
+                // may have produced data in between.
+                if ( _closed || _tail.get() != head )
+                    continue;
+
+                // We block here on an empty buffer, waiting for
+                // data to be written or an asynchronous close.
+                LockSupport.park( this );
+            }
+            finally
+            {
+                _parkedReader = null;
+            }
+
+            if ( Thread.interrupted() )
+                throw new InterruptedIOException();
+        }
+    }
+
+    private static void unpark( Thread thread )
+    {
+        if ( thread != null )
+            LockSupport.unpark( thread );
+    }
+}
@@ -283,15 +283,35 @@ public class ResourceManager
             Field f,
             String resource )
     {
-        var value = _converters.convert(
-                f.getType(),
-                resource );
+        var type = f.getType();
+
+        // Primitive fields are converted and set without boxing.
+        long integral = 0;
+        double real = 0;
+        Object value = null;
+
+        if ( type == int.class )
+            integral = _converters.convertInt( resource );
+        else if ( type == long.class )
+            integral = _converters.convertLong( resource );
+        else if ( type == double.class )
+            real = _converters.convertDouble( resource );
+        else
+            value = _converters.convert( type, resource );
+
         try
         {
             if ( ! f.canAccess( instance ) )
                 f.setAccessible( true );
 
-            f.set( instance, value );
+            if ( type == int.class )
+                f.setInt( instance, (int)integral );
+            else if ( type == long.class )
+                f.setLong( instance, integral );
+            else if ( type == double.class )
+                f.setDouble( instance, real );
+            else
+                f.set( instance, value );
         }
         catch ( Exception e )
         {
@@ -0,0 +1,337 @@
+/*
+ * $Id$
+ *
+ * Unpublished work.
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util.xml;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+/**
+ * A set of xpath expressions that are evaluated together against a
+ * document.  If all expressions are supported by {@link StreamingPath}
+ * the document is streamed once and all expressions are evaluated in
+ * this single pass.  Otherwise the document is parsed once and the
+ * expressions are evaluated one after the other against the parsed
+ * document.  The evaluation is not parallelized: the DOM is not
+ * thread-safe even for read access, and giving each worker its own
+ * cloned or parsed document costs more than the parallel evaluation
+ * saves.
+ * <p>
+ * Add all queries before evaluating.  Evaluation does not modify the
+ * plan, so a completely built plan can be evaluated concurrently.
+ * </p>
+ *
+ * <pre>
+ * var plan = new QueryPlan();
+ * var id = plan.add( "/order/@id", Integer::valueOf );
+ * var items = plan.addNodes( "//item/@name" );
+ *
+ * var results = plan.evaluate( in );
+ * int orderId = results.get( id );
+ * </pre>
+ *
+ * @author Michael Binz
+ */
+public final class QueryPlan
+{
+    /**
+     * A registered expression.
+     *
+     * @param <T> The result type.
+     */
+    public static final class Query<T>
+    {
+        private final QueryPlan _plan;
+        private final int _index;
+        private final String _expression;
+
+        /**
+         * Set if the query selects a node list.  Otherwise the
+         * string value of the first selected node is used.
+         */
+        private final boolean _nodes;
+
+        /**
+         * Creates the typed result from the matched node values.
+         */
+        private final Function<List<String>, T> _result;
+
+        /**
+         * The streaming version of the expression, {@code null} if the
+         * expression cannot be streamed.
+         */
+        private final StreamingPath _streaming;
+
+        private Query(
+                QueryPlan plan,
+                int index,
+                String expression,
+                boolean nodes,
+                Function<List<String>, T> result )
+        {
+            _plan = plan;
+            _index = index;
+            _expression = expression;
+            _nodes = nodes;
+            _result = result;
+            _streaming = streaming( expression );
+        }
+
+        private static StreamingPath streaming( String expression )
+        {
+            try
+            {
+                return StreamingPath.compile( expression );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                return null;
+            }
+        }
+
+        /**
+         * @return The xpath expression.
+         */
+        public String getExpression()
+        {
+            return _expression;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _expression;
+        }
+    }
+
+    /**
+     * The results of an evaluation.
+     */
+    public static final class Results
+    {
+        private final QueryPlan _plan;
+        private final Object[] _values;
+
+        private Results( QueryPlan plan, Object[] values )
+        {
+            _plan = plan;
+            _values = values;
+        }
+
+        /**
+         * Get the result of a query.
+         *
+         * @param <T> The result type.
+         * @param query The query.
+         * @return The result.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get( Query<T> query )
+        {
+            if ( query._plan != _plan )
+                throw new IllegalArgumentException(
+                        "Query not part of the plan: " + query );
+
+            return (T)_values[ query._index ];
+        }
+    }
+
+    private final List<Query<?>> _queries =
+            new ArrayList<>();
+
+    /**
+     * Create an empty plan.  Add the queries before evaluating.
+     */
+    public QueryPlan()
+    {
+    }
+
+    /**
+     * Add a query for the string value of an expression.
+     *
+     * @param expression The xpath.
+     * @return The query.  Used to access the result.
+     */
+    public Query<String> add( String expression )
+    {
+        return add( expression, Function.identity() );
+    }
+
+    /**
+     * Add a query for the converted string value of an expression.
+     *
+     * @param <T> The result type.
+     * @param expression The xpath.
+     * @param converter Converts the string value.
+     * @return The query.  Used to access the result.
+     */
+    public <T> Query<T> add(
+            String expression,
+            Function<String, T> converter )
+    {
+        Objects.requireNonNull( converter );
+
+        return add(
+                expression,
+                false,
+                c -> converter.apply( c.isEmpty() ? "" : c.get( 0 ) ) );
+    }
+
+    /**
+     * Add a query for the text content of the nodes selected by an
+     * expression.
+     *
+     * @param expression The xpath.
+     * @return The query.  Used to access the result.
+     */
+    public Query<List<String>> addNodes( String expression )
+    {
+        return addNodes( expression, Function.identity() );
+    }
+
+    /**
+     * Add a query for the converted text content of the nodes selected
+     * by an expression.
+     *
+     * @param <T> The element type of the result.
+     * @param expression The xpath.
+     * @param converter Converts the text content of a node.
+     * @return The query.  Used to access the result.
+     */
+    public <T> Query<List<T>> addNodes(
+            String expression,
+            Function<String, T> converter )
+    {
+        Objects.requireNonNull( converter );
+
+        return add(
+                expression,
+                true,
+                c -> Collections.unmodifiableList(
+                        c.stream().map( converter ).collect( Collectors.toList() ) ) );
+    }
+
+    private <T> Query<T> add(
+            String expression,
+            boolean nodes,
+            Function<List<String>, T> result )
+    {
+        var query = new Query<>(
+                this,
+                _queries.size(),
+                Objects.requireNonNull( expression ),
+                nodes,
+                result );
+
+        _queries.add( query );
+
+        return query;
+    }
+
+    /**
+     * @return {@code true} if all queries are evaluated in a single pass
+     * over the streamed document.
+     */
+    public boolean isStreamable()
+    {
+        return _queries.stream().allMatch( c -> c._streaming != null );
+    }
+
+    /**
+     * Evaluate the plan.  The passed stream is closed.
+     *
+     * @param xmlDocument The document.
+     * @return The results.
+     * @throws Exception In case of an error.
+     */
+    public Results evaluate( InputStream xmlDocument )
+            throws Exception
+    {
+        try ( xmlDocument )
+        {
+            var values = isStreamable() ?
+                    evaluateStreaming( xmlDocument ) :
+                    evaluateDom( xmlDocument );
+
+            return new Results( this, values );
+        }
+    }
+
+    private Object[] evaluateStreaming( InputStream xmlDocument )
+            throws Exception
+    {
+        var paths = new ArrayList<StreamingPath>( _queries.size() );
+        var matches = new ArrayList<List<String>>( _queries.size() );
+        var consumers = new ArrayList<Consumer<String>>( _queries.size() );
+
+        for ( var c : _queries )
+        {
+            var list = new ArrayList<String>();
+            paths.add( c._streaming );
+            matches.add( list );
+            consumers.add( c._nodes ?
+                    list::add :
+                    // Only the first node is needed.
+                    s -> { if ( list.isEmpty() ) list.add( s ); } );
+        }
+
+        StreamingPath.evaluate( xmlDocument, paths, consumers );
+
+        var result = new Object[ _queries.size() ];
+
+        for ( int i = 0 ; i < result.length ; i++ )
+            result[i] = _queries.get( i )._result.apply( matches.get( i ) );
+
+        return result;
+    }
+
+    private Object[] evaluateDom( InputStream xmlDocument )
+            throws Exception
+    {
+        var document = parse( xmlDocument );
+
+        var result = new Object[ _queries.size() ];
+
+        for ( int i = 0 ; i < result.length ; i++ )
+            result[i] = evaluate( _queries.get( i ), document );
+
+        return result;
+    }
+
+    /**
+     * Evaluate a query using the evaluator of the current thread.
+     */
+    private static Object evaluate( Query<?> query, Document document )
+            throws Exception
+    {
+        var evaluator = XmlUtil.XPATH.get();
+
+        var values = query._nodes ?
+                evaluator.evaluateNodes( document, query._expression ) :
+                List.of( evaluator.evaluate( document, query._expression ) );
+
+        return query._result.apply( values );
+    }
+
+    private static Document parse( InputStream xmlDocument )
+            throws Exception
+    {
+        var factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware( true );
+
+        return factory.newDocumentBuilder().parse( xmlDocument );
+    }
+}
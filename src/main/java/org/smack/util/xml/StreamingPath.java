@@ -0,0 +1,718 @@
+/*
+ * $Id$
+ *
+ * Unpublished work.
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.smack.util.JavaUtil;
+
+/**
+ * Evaluates a subset of xpath on a StAX stream.  Matches are delivered
+ * while the document is read, the document is never held in memory.
+ * <p>
+ * The supported subset consists of absolute location paths of
+ * element steps using the child ({@code /}) and descendant ({@code //})
+ * axes.  A step is a name, a prefixed name or {@code *}, optionally
+ * followed by predicates of the form {@code [@name]} or
+ * {@code [@name='value']}.  The path may end with an attribute step
+ * {@code @name} or {@code @*}.  Examples are {@code /a/b/c},
+ * {@code //item/@id} and {@code /a//b[@type='x']}.  Prefixes are resolved
+ * against the declarations in the document.
+ * </p>
+ * <p>
+ * The result of an element step is its text content, like in
+ * {@link XmlUtil#getXPathNodes(InputStream, String)}.  Matches are
+ * delivered in document order.
+ * </p>
+ *
+ * @author Michael Binz
+ */
+public final class StreamingPath
+{
+    /**
+     * Ignores access to non-existent dtds.
+     */
+    private static final XMLResolver EMPTY_DTD_RESOLVER =
+            (publicId, systemId, baseUri, namespace) ->
+                systemId != null && systemId.endsWith( ".dtd" ) ?
+                        new ByteArrayInputStream( new byte[0] ) :
+                        null;
+
+    /**
+     * The maximum number of element steps.  Each step is a bit in
+     * the state set of an element.
+     */
+    private static final int MAX_STEPS = Long.SIZE - 1;
+
+    private static class NameTest
+    {
+        /**
+         * The prefix, {@code null} if not prefixed.
+         */
+        final String _prefix;
+
+        /**
+         * The local name, {@code null} for {@code *}.
+         */
+        final String _localName;
+
+        NameTest( String prefix, String localName )
+        {
+            _prefix = prefix;
+            _localName = localName;
+        }
+
+        /**
+         * Check a name of the current element of the reader.
+         */
+        boolean matches( XMLStreamReader reader, String namespace, String localName )
+        {
+            if ( _localName == null )
+                return true;
+            if ( ! _localName.equals( localName ) )
+                return false;
+
+            namespace = normalize( namespace );
+
+            if ( _prefix == null )
+                return namespace.isEmpty();
+
+            var bound = reader.getNamespaceContext().getNamespaceURI( _prefix );
+
+            // An unbound prefix never matches.
+            return bound != null &&
+                    ! bound.isEmpty() &&
+                    bound.equals( namespace );
+        }
+
+        @Override
+        public String toString()
+        {
+            var name = _localName == null ? "*" : _localName;
+
+            return _prefix == null ?
+                    name :
+                    _prefix + ":" + name;
+        }
+    }
+
+    private static class Predicate
+    {
+        final NameTest _attribute;
+
+        /**
+         * The required value, {@code null} if only the existence of the
+         * attribute is checked.
+         */
+        final String _value;
+
+        Predicate( NameTest attribute, String value )
+        {
+            _attribute = attribute;
+            _value = value;
+        }
+
+        boolean matches( XMLStreamReader reader )
+        {
+            for ( int i = 0 ; i < reader.getAttributeCount() ; i++ )
+            {
+                if ( ! _attribute.matches(
+                        reader,
+                        reader.getAttributeNamespace( i ),
+                        reader.getAttributeLocalName( i ) ) )
+                    continue;
+
+                if ( _value == null || _value.equals( reader.getAttributeValue( i ) ) )
+                    return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _value == null ?
+                    "[@" + _attribute + "]" :
+                    "[@" + _attribute + "='" + _value + "']";
+        }
+    }
+
+    private static class Step
+    {
+        final boolean _descendant;
+        final NameTest _name;
+        final List<Predicate> _predicates;
+
+        Step( boolean descendant, NameTest name, List<Predicate> predicates )
+        {
+            _descendant = descendant;
+            _name = name;
+            _predicates = predicates;
+        }
+
+        boolean matches( XMLStreamReader reader )
+        {
+            if ( ! _name.matches(
+                    reader,
+                    reader.getNamespaceURI(),
+                    reader.getLocalName() ) )
+                return false;
+
+            for ( var c : _predicates )
+            {
+                if ( ! c.matches( reader ) )
+                    return false;
+            }
+
+            return true;
+        }
+    }
+
+    private final String _expression;
+
+    private final Step[] _steps;
+
+    /**
+     * The final attribute step, {@code null} if the path selects
+     * elements.
+     */
+    private final NameTest _attribute;
+
+    private StreamingPath(
+            String expression,
+            List<Step> steps,
+            NameTest attribute )
+    {
+        _expression = expression;
+        _steps = steps.toArray( new Step[steps.size()] );
+        _attribute = attribute;
+    }
+
+    /**
+     * Compile an expression.
+     *
+     * @param expression The expression.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression is not in the
+     * supported subset.
+     * @see #isStreamable(String)
+     */
+    public static StreamingPath compile( String expression )
+    {
+        return new Parser( Objects.requireNonNull( expression ) ).parse();
+    }
+
+    /**
+     * Check if an expression is in the supported subset.
+     *
+     * @param expression The expression.
+     * @return {@code true} if the expression can be compiled.
+     */
+    public static boolean isStreamable( String expression )
+    {
+        try
+        {
+            compile( expression );
+            return true;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Evaluate the expression.  The passed stream is not closed.
+     *
+     * @param xmlDocument The document.
+     * @param consumer Receives the matches in document order.
+     * @throws XMLStreamException In case of an error.
+     */
+    public void evaluate( InputStream xmlDocument, Consumer<String> consumer )
+        throws XMLStreamException
+    {
+        evaluate(
+                xmlDocument,
+                List.of( this ),
+                List.of( consumer ) );
+    }
+
+    /**
+     * Evaluate multiple expressions in a single pass over the document.
+     * The passed stream is not closed.
+     *
+     * @param xmlDocument The document.
+     * @param paths The expressions to evaluate.
+     * @param consumers The consumers receiving the matches of the path
+     * at the same position, in document order.
+     * @throws XMLStreamException In case of an error.
+     */
+    public static void evaluate(
+            InputStream xmlDocument,
+            List<StreamingPath> paths,
+            List<? extends Consumer<String>> consumers )
+        throws XMLStreamException
+    {
+        if ( paths.size() != consumers.size() )
+            throw new IllegalArgumentException( "Size mismatch." );
+
+        var reader = createReader( xmlDocument );
+
+        try
+        {
+            var matchers = new ArrayList<Matcher>( paths.size() );
+            for ( var c : paths )
+                matchers.add( c.new Matcher( reader ) );
+
+            while ( reader.hasNext() )
+            {
+                int event = reader.next();
+
+                for ( int i = 0 ; i < matchers.size() ; i++ )
+                {
+                    var matcher = matchers.get( i );
+                    matcher.process( event );
+
+                    for ( var c = matcher.poll() ; c != null ; c = matcher.poll() )
+                        consumers.get( i ).accept( c );
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static XMLStreamReader createReader( InputStream xmlDocument )
+        throws XMLStreamException
+    {
+        var factory = XMLInputFactory.newInstance();
+        factory.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, true );
+        factory.setXMLResolver( EMPTY_DTD_RESOLVER );
+
+        return factory.createXMLStreamReader( xmlDocument );
+    }
+
+    /**
+     * Evaluate the expression lazily.  The document is read while the
+     * returned stream is consumed.  Closing the returned stream closes
+     * the passed stream.  Errors are reported as
+     * {@link IllegalStateException}s.
+     *
+     * @param xmlDocument The document.
+     * @return The matches in document order.
+     * @throws XMLStreamException If the document cannot be opened.
+     */
+    public Stream<String> stream( InputStream xmlDocument )
+        throws XMLStreamException
+    {
+        var reader = createReader( xmlDocument );
+        var matcher = new Matcher( reader );
+
+        var spliterator = new Spliterators.AbstractSpliterator<String>(
+                Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL )
+        {
+            @Override
+            public boolean tryAdvance( Consumer<? super String> action )
+            {
+                try
+                {
+                    var next = matcher.poll();
+                    while ( next == null && reader.hasNext() )
+                    {
+                        matcher.process( reader.next() );
+                        next = matcher.poll();
+                    }
+                    if ( next == null )
+                        return false;
+                    action.accept( next );
+                    return true;
+                }
+                catch ( XMLStreamException e )
+                {
+                    throw new IllegalStateException( e );
+                }
+            }
+        };
+
+        return StreamSupport.stream( spliterator, false ).onClose( () -> {
+            JavaUtil.force( reader::close );
+            JavaUtil.force( xmlDocument::close );
+        } );
+    }
+
+    @Override
+    public String toString()
+    {
+        return _expression;
+    }
+
+    /**
+     * An element whose text content is collected.
+     */
+    private static class Capture
+    {
+        final StringBuilder _text = new StringBuilder();
+
+        /**
+         * The depth of the element.
+         */
+        final int _depth;
+
+        boolean _done;
+
+        Capture( int depth )
+        {
+            _depth = depth;
+        }
+
+        Capture( String value )
+        {
+            _depth = -1;
+            _text.append( value );
+            _done = true;
+        }
+    }
+
+    /**
+     * The state of a single evaluation.  Receives the events of a
+     * reader that may be shared with other matchers.
+     */
+    private class Matcher
+    {
+        private final XMLStreamReader _reader;
+
+        /**
+         * The active steps per open element.  Bit i is set if step i
+         * may match a child of the element.
+         */
+        private long[] _states = new long[ 32 ];
+
+        private int _depth;
+
+        /**
+         * Matches in document order.  The head is delivered when it is
+         * done.
+         */
+        private final ArrayDeque<Capture> _pending = new ArrayDeque<>();
+
+        /**
+         * The number of pending captures that are not done.
+         */
+        private int _open;
+
+        private final int _last = _steps.length - 1;
+
+        Matcher( XMLStreamReader reader )
+        {
+            _reader = reader;
+
+            // The document node activates the first step.
+            _states[0] = 1L;
+        }
+
+        /**
+         * @return The next completed match, {@code null} if no match
+         * is completed.
+         */
+        String poll()
+        {
+            if ( ! _pending.isEmpty() && _pending.peek()._done )
+                return _pending.remove()._text.toString();
+
+            return null;
+        }
+
+        /**
+         * Process the current event of the reader.
+         *
+         * @param event The event type.
+         */
+        void process( int event )
+        {
+            switch ( event )
+            {
+            case XMLStreamConstants.START_ELEMENT:
+                startElement();
+                break;
+
+            case XMLStreamConstants.END_ELEMENT:
+                endElement();
+                break;
+
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                if ( _open > 0 )
+                    text();
+                break;
+
+            default:
+                break;
+            }
+        }
+
+        private void startElement()
+        {
+            long active = _states[_depth];
+            long next = 0;
+
+            for ( long bits = active ; bits != 0 ; bits &= bits - 1 )
+            {
+                int i = Long.numberOfTrailingZeros( bits );
+                var step = _steps[i];
+
+                if ( step._descendant )
+                    next |= 1L << i;
+
+                if ( ! step.matches( _reader ) )
+                    continue;
+
+                if ( i < _last )
+                    next |= 1L << (i + 1);
+                else
+                    match();
+            }
+
+            _depth++;
+            if ( _depth == _states.length )
+                _states = Arrays.copyOf( _states, _depth * 2 );
+            _states[_depth] = next;
+        }
+
+        private void match()
+        {
+            if ( _attribute == null )
+            {
+                _pending.add( new Capture( _depth + 1 ) );
+                _open++;
+                return;
+            }
+
+            for ( int i = 0 ; i < _reader.getAttributeCount() ; i++ )
+            {
+                if ( _attribute.matches(
+                        _reader,
+                        _reader.getAttributeNamespace( i ),
+                        _reader.getAttributeLocalName( i ) ) )
+                    _pending.add( new Capture( _reader.getAttributeValue( i ) ) );
+            }
+        }
+
+        private void endElement()
+        {
+            if ( _open > 0 )
+            {
+                // The innermost open capture is the last one not done.
+                var it = _pending.descendingIterator();
+                while ( it.hasNext() )
+                {
+                    var c = it.next();
+                    if ( c._done )
+                        continue;
+                    if ( c._depth == _depth )
+                    {
+                        c._done = true;
+                        _open--;
+                    }
+                    break;
+                }
+            }
+
+            _depth--;
+        }
+
+        private void text()
+        {
+            for ( var c : _pending )
+            {
+                if ( ! c._done )
+                    c._text.append(
+                            _reader.getTextCharacters(),
+                            _reader.getTextStart(),
+                            _reader.getTextLength() );
+            }
+        }
+    }
+
+    /**
+     * Parses the supported subset.
+     */
+    private static class Parser
+    {
+        private final String _expression;
+        private int _position;
+
+        Parser( String expression )
+        {
+            _expression = expression;
+        }
+
+        StreamingPath parse()
+        {
+            var steps = new ArrayList<Step>();
+            NameTest attribute = null;
+
+            if ( ! peek( '/' ) )
+                throw error( "Not an absolute path" );
+
+            while ( _position < _expression.length() )
+            {
+                expect( '/' );
+                boolean descendant = accept( '/' );
+
+                if ( accept( '@' ) )
+                {
+                    if ( descendant )
+                    {
+                        if ( ! steps.isEmpty() )
+                            throw error( "Descendant attribute step" );
+                        // '//@a' selects the attributes of all elements.
+                        steps.add( new Step( true, new NameTest( null, null ), List.of() ) );
+                    }
+                    attribute = nameTest();
+                    if ( _position < _expression.length() )
+                        throw error( "Attribute step must be last" );
+                    break;
+                }
+
+                var name = nameTest();
+                var predicates = new ArrayList<Predicate>();
+                while ( accept( '[' ) )
+                    predicates.add( predicate() );
+
+                steps.add( new Step( descendant, name, predicates ) );
+            }
+
+            if ( steps.isEmpty() )
+                throw error( "No steps" );
+            if ( steps.size() > MAX_STEPS )
+                throw error( "Too many steps" );
+
+            return new StreamingPath( _expression, steps, attribute );
+        }
+
+        private Predicate predicate()
+        {
+            expect( '@' );
+            var attribute = nameTest();
+            String value = null;
+
+            if ( accept( '=' ) )
+            {
+                char quote = next();
+                if ( quote != '\'' && quote != '"' )
+                    throw error( "Literal expected" );
+                int end = _expression.indexOf( quote, _position );
+                if ( end < 0 )
+                    throw error( "Unterminated literal" );
+                value = _expression.substring( _position, end );
+                _position = end + 1;
+            }
+
+            expect( ']' );
+            return new Predicate( attribute, value );
+        }
+
+        private NameTest nameTest()
+        {
+            if ( accept( '*' ) )
+                return new NameTest( null, null );
+
+            var name = ncName();
+            if ( ! accept( ':' ) )
+                return new NameTest( null, name );
+
+            return new NameTest( name, ncName() );
+        }
+
+        private String ncName()
+        {
+            int start = _position;
+
+            while ( _position < _expression.length() )
+            {
+                char c = _expression.charAt( _position );
+                boolean valid = _position == start ?
+                        Character.isLetter( c ) || c == '_' :
+                        Character.isLetterOrDigit( c ) || c == '_' || c == '-' || c == '.';
+                if ( ! valid )
+                    break;
+                _position++;
+            }
+
+            if ( start == _position )
+                throw error( "Name expected" );
+
+            return _expression.substring( start, _position );
+        }
+
+        private boolean peek( char c )
+        {
+            return _position < _expression.length() &&
+                    _expression.charAt( _position ) == c;
+        }
+
+        private boolean accept( char c )
+        {
+            if ( ! peek( c ) )
+                return false;
+            _position++;
+            return true;
+        }
+
+        private void expect( char c )
+        {
+            if ( ! accept( c ) )
+                throw error( "'" + c + "' expected" );
+        }
+
+        private char next()
+        {
+            if ( _position == _expression.length() )
+                throw error( "Unexpected end" );
+            return _expression.charAt( _position++ );
+        }
+
+        private IllegalArgumentException error( String message )
+        {
+            return new IllegalArgumentException( String.format(
+                    "%s at %d: %s",
+                    message,
+                    _position,
+                    _expression ) );
+        }
+    }
+
+    private static String normalize( String namespace )
+    {
+        return namespace == null ?
+                XMLConstants.NULL_NS_URI :
+                namespace;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * $Id$
+ *
+ * Unpublished work.
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util.xml;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.URIResolver;
+
+/**
+ * A thread-safe cache of compiled stylesheets.  Entries are keyed by the
+ * stylesheet path and are recompiled if the modification time of the
+ * file or of an included or imported stylesheet file changes.  If the
+ * cache is full, the least recently used entry is evicted.
+ *
+ * @author Michael Binz
+ */
+final class TemplatesCache
+{
+    private static class Compiled
+    {
+        final FileTime _modified;
+        final Map<Path, FileTime> _dependencies;
+        final Templates _templates;
+
+        Compiled(
+                FileTime modified,
+                Map<Path, FileTime> dependencies,
+                Templates templates )
+        {
+            _modified = modified;
+            _dependencies = dependencies;
+            _templates = templates;
+        }
+
+        /**
+         * @param modified The current modification time of the stylesheet.
+         * @return {@code true} if neither the stylesheet nor one of its
+         * dependencies were modified.
+         */
+        boolean isCurrent( FileTime modified )
+        {
+            if ( ! _modified.equals( modified ) )
+                return false;
+
+            for ( var c : _dependencies.entrySet() )
+            {
+                try
+                {
+                    if ( ! c.getValue().equals(
+                            Files.getLastModifiedTime( c.getKey() ) ) )
+                        return false;
+                }
+                catch ( IOException e )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Records the files included or imported while compiling a stylesheet
+     * together with their modification times.  Resolution itself is left
+     * to the processor.  Compiled stylesheets keep the resolver for the
+     * {@code document()} function, so recording ends with the compilation.
+     */
+    private static class DependencyRecorder implements URIResolver
+    {
+        private final Map<Path, FileTime> _dependencies = new HashMap<>();
+
+        private boolean _recording = true;
+
+        @Override
+        public synchronized Source resolve( String href, String base )
+        {
+            if ( ! _recording )
+                return null;
+
+            try
+            {
+                var uri = base != null ?
+                        new URI( base ).resolve( href ) :
+                        new URI( href );
+
+                if ( "file".equals( uri.getScheme() ) )
+                {
+                    var path = Paths.get( uri );
+                    _dependencies.putIfAbsent(
+                            path,
+                            Files.getLastModifiedTime( path ) );
+                }
+            }
+            catch ( URISyntaxException |
+                    IllegalArgumentException |
+                    IOException e )
+            {
+                // Reported by the processor.
+            }
+
+            return null;
+        }
+
+        /**
+         * End recording.
+         *
+         * @return The recorded files and their modification times.
+         */
+        synchronized Map<Path, FileTime> stop()
+        {
+            _recording = false;
+            return Map.copyOf( _dependencies );
+        }
+    }
+
+    /**
+     * Access is guarded by the map.
+     */
+    private final Map<Path, Compiled> _cache;
+
+    /**
+     * Create an instance.
+     *
+     * @param capacity The maximum number of cached stylesheets.
+     */
+    @SuppressWarnings("serial")
+    TemplatesCache( int capacity )
+    {
+        if ( capacity <= 0 )
+            throw new IllegalArgumentException( "capacity must be > 0" );
+
+        _cache = new LinkedHashMap<>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Path, Compiled> eldest )
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the compiled stylesheet.  The stylesheet is compiled if it is
+     * not cached or if the file or one of its dependencies was modified.
+     * Concurrent requests for a missing entry may compile the stylesheet
+     * more than once.
+     *
+     * @param stylesheet The stylesheet file.
+     * @return The compiled stylesheet.
+     * @throws IOException If the file cannot be read.
+     * @throws TransformerConfigurationException If the stylesheet is
+     * not valid.
+     */
+    Templates get( Path stylesheet )
+        throws IOException, TransformerConfigurationException
+    {
+        var key =
+                stylesheet.toAbsolutePath().normalize();
+        var modified =
+                Files.getLastModifiedTime( key );
+
+        Compiled entry;
+        synchronized ( _cache )
+        {
+            entry = _cache.get( key );
+        }
+
+        // Dependencies are checked outside the lock.
+        if ( entry != null && entry.isCurrent( modified ) )
+            return entry._templates;
+
+        // Compile outside the lock to not block access to other entries.
+        var recorder = new DependencyRecorder();
+        var templates = XmlUtil.compile(
+                Files.newInputStream( key ),
+                key.toUri().toString(),
+                recorder );
+
+        synchronized ( _cache )
+        {
+            _cache.put(
+                    key,
+                    new Compiled( modified, recorder.stop(), templates ) );
+        }
+
+        return templates;
+    }
+
+    /**
+     * @return The number of cached stylesheets.
+     */
+    int size()
+    {
+        synchronized ( _cache )
+        {
+            return _cache.size();
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear()
+    {
+        synchronized ( _cache )
+        {
+            _cache.clear();
+        }
+    }
+}
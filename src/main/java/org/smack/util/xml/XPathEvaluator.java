@@ -0,0 +1,352 @@
+/*
+ * $Id$
+ *
+ * Unpublished work.
+ * Copyright © 2026 Michael G. Binz
+ */
+package org.smack.util.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Evaluates xpath expressions against XML documents.  Compiled expressions
+ * are cached, so that repeated queries do not pay the compile costs.
+ * Namespace prefixes are resolved lazily against the queried document.
+ * Prefixes declared on the document element are looked up directly, the
+ * complete document is only scanned for prefixes declared on nested
+ * elements.
+ * <p>
+ * Instances are not thread-safe.  Use an instance per thread.
+ * </p>
+ *
+ * @author Michael Binz
+ */
+public final class XPathEvaluator
+{
+    /**
+     * The default maximum number of cached expressions.
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * A compiled expression and the namespace bindings that were
+     * resolved when it was compiled.
+     */
+    private static class Compiled
+    {
+        final XPathExpression _expression;
+        final Map<String, String> _bindings;
+
+        Compiled( XPathExpression expression, Map<String, String> bindings )
+        {
+            _expression = expression;
+            _bindings = bindings;
+        }
+    }
+
+    private final XPath _xpath;
+
+    private final DocumentBuilder _builder;
+
+    private final Map<String, Compiled> _cache;
+
+    /**
+     * Selects all namespace nodes of a document.
+     */
+    private final XPathExpression _namespaces;
+
+    /**
+     * The document of the running compilation.  Only set during
+     * {@link #compile(Document, String)}, so that no document is retained.
+     */
+    private Document _document;
+
+    /**
+     * The document whose namespace nodes were scanned last and the
+     * resulting bindings.
+     */
+    private WeakReference<Document> _scanned =
+            new WeakReference<>( null );
+    private NamespaceContextImpl _scannedNamespaces;
+
+    /**
+     * Receives the namespace bindings resolved while compiling, otherwise
+     * {@code null}.
+     */
+    private Map<String, String> _recording;
+
+    /**
+     * Create an instance.
+     */
+    public XPathEvaluator()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Create an instance.
+     *
+     * @param capacity The maximum number of cached expressions.  If the
+     * cache is full the least recently used expression is evicted.
+     */
+    @SuppressWarnings("serial")
+    public XPathEvaluator( int capacity )
+    {
+        if ( capacity <= 0 )
+            throw new IllegalArgumentException( "capacity must be > 0" );
+
+        _cache = new LinkedHashMap<>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Compiled> eldest )
+            {
+                return size() > capacity;
+            }
+        };
+
+        _xpath = XPathFactory.newInstance().newXPath();
+
+        try
+        {
+            _namespaces = _xpath.compile( "//namespace::*" );
+
+            var factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware( true );
+            _builder = factory.newDocumentBuilder();
+        }
+        catch ( XPathExpressionException | ParserConfigurationException e )
+        {
+            throw new IllegalStateException( e );
+        }
+
+        _xpath.setNamespaceContext( new RecordingContext() );
+    }
+
+    /**
+     * Parse a document.  The passed stream is not closed.
+     *
+     * @param xmlDocument The document to parse.
+     * @return The namespace aware document.
+     * @throws SAXException If the document is not valid.
+     * @throws IOException In case of an io error.
+     */
+    public Document parse( InputStream xmlDocument )
+        throws SAXException, IOException
+    {
+        try
+        {
+            return _builder.parse( xmlDocument );
+        }
+        finally
+        {
+            _builder.reset();
+        }
+    }
+
+    /**
+     * Evaluate an expression.
+     *
+     * @param document The document.
+     * @param expression The xpath.
+     * @return The result of the expression.  The empty string if the
+     * expression did not select data.
+     * @throws XPathExpressionException In case of an error.
+     */
+    public String evaluate( Document document, String expression )
+        throws XPathExpressionException
+    {
+        return compile( document, expression )
+                .evaluate( document, XPathConstants.STRING )
+                .toString();
+    }
+
+    /**
+     * Evaluate an expression that selects nodes.
+     *
+     * @param document The document.
+     * @param expression The xpath.
+     * @return The text content of the selected nodes.
+     * @throws XPathExpressionException In case of an error.
+     */
+    public List<String> evaluateNodes( Document document, String expression )
+        throws XPathExpressionException
+    {
+        NodeList x = (NodeList)compile( document, expression )
+                .evaluate( document, XPathConstants.NODESET );
+
+        var result = new ArrayList<String>( x.getLength() );
+
+        for ( int i = 0 ; i < x.getLength() ; i++ )
+            result.add( x.item( i ).getTextContent() );
+
+        return result;
+    }
+
+    /**
+     * Get the compiled expression for a document.  A cached expression is
+     * reused if its namespace prefixes are bound to the same namespaces
+     * in the passed document.
+     *
+     * @param document The document the expression is evaluated against.
+     * @param expression The xpath.
+     * @return The compiled expression.
+     * @throws XPathExpressionException In case of an error.
+     */
+    public XPathExpression compile( Document document, String expression )
+        throws XPathExpressionException
+    {
+        Objects.requireNonNull( expression );
+
+        _document = Objects.requireNonNull( document );
+        try
+        {
+            var cached = _cache.get( expression );
+
+            if ( cached != null && matches( cached._bindings ) )
+                return cached._expression;
+
+            _recording = new HashMap<>();
+
+            var compiled = new Compiled(
+                    _xpath.compile( expression ),
+                    _recording );
+            _cache.put( expression, compiled );
+            return compiled._expression;
+        }
+        finally
+        {
+            _document = null;
+            _recording = null;
+        }
+    }
+
+    /**
+     * @return The number of cached expressions.
+     */
+    int size()
+    {
+        return _cache.size();
+    }
+
+    /**
+     * Resolve a prefix against the current document.
+     */
+    private String getNamespaceURI( String prefix )
+    {
+        if ( _document == null )
+            return null;
+
+        Element root = _document.getDocumentElement();
+
+        if ( root != null )
+        {
+            var result = root.lookupNamespaceURI(
+                    prefix.isEmpty() ? null : prefix );
+            if ( result != null )
+                return result;
+        }
+
+        return scanNamespaces().get( prefix );
+    }
+
+    private boolean matches( Map<String, String> bindings )
+    {
+        for ( var c : bindings.entrySet() )
+        {
+            if ( ! Objects.equals( c.getValue(), getNamespaceURI( c.getKey() ) ) )
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return All namespace bindings of the current document.
+     */
+    private NamespaceContextImpl scanNamespaces()
+    {
+        if ( _scanned.get() == _document )
+            return _scannedNamespaces;
+
+        var result = new NamespaceContextImpl();
+
+        try
+        {
+            NodeList x = (NodeList)_namespaces.evaluate(
+                    _document,
+                    XPathConstants.NODESET );
+
+            for ( int i = 0 ; i < x.getLength() ; i++ )
+            {
+                var q =
+                        x.item( i );
+                result.put(
+                        q.getLocalName(),
+                        q.getNodeValue() );
+            }
+        }
+        catch ( XPathExpressionException e )
+        {
+            throw new IllegalStateException( e );
+        }
+
+        _scanned = new WeakReference<>( _document );
+        _scannedNamespaces = result;
+
+        return result;
+    }
+
+    /**
+     * Resolves prefixes against the current document and records the
+     * resolved bindings during compilation.
+     */
+    private class RecordingContext implements NamespaceContext
+    {
+        @Override
+        public String getNamespaceURI( String prefix )
+        {
+            var result = XPathEvaluator.this.getNamespaceURI( prefix );
+
+            if ( _recording != null )
+                _recording.put( prefix, result );
+
+            return result;
+        }
+
+        @Override
+        public String getPrefix( String uri )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterator<String> getPrefixes( String uri )
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
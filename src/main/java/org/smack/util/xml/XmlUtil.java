@@ -6,38 +6,53 @@
  */
 package org.smack.util.xml;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Result;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
 
 import org.smack.util.Disposer;
+import org.smack.util.FunctionalUtil.ConsumerX;
 import org.smack.util.StringUtil;
 import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  * XML utility operations.
@@ -121,12 +136,15 @@ public class XmlUtil
             Map<String,Object> parameters )
                     throws Exception
     {
-        return transformImpl(
-                new FileInputStream( stylesheet ),
+        ByteArrayOutputStream bos =
+                new ByteArrayOutputStream();
+
+        transformImpl(
+                newTransformer( TEMPLATES.get( stylesheet.toPath() ), parameters ),
                 new FileInputStream( datafile ),
-                stylesheet.getPath(),
-                parameters );
+                new StreamResult( bos ) );
 
+        return bos.toString();
     }
 
     /**
@@ -155,8 +173,420 @@ public class XmlUtil
     }
 
     /**
-     * Internal implementation of transform including resource management.
-     * The passed input streams get closed after processing.
+     * Transform a file based on an XSLT transformation and stream the
+     * result into the passed target.  Access to non-existent dtds is
+     * ignored.  The systemId of the stylesheet is set, so that access
+     * on the stylesheet via the xls 'document( '' )' operation works.
+     *
+     * @param stylesheet The transformation.
+     * @param datafile The file to transform.
+     * @param parameters Parameters for the stylesheet.
+     * @param target Receives the result.  Not closed.
+     * @throws Exception In case of an error.
+     */
+    public static void transform(
+            File stylesheet,
+            File datafile,
+            Map<String,Object> parameters,
+            OutputStream target )
+                    throws Exception
+    {
+        transformImpl(
+                newTransformer( TEMPLATES.get( stylesheet.toPath() ), parameters ),
+                new FileInputStream( datafile ),
+                new StreamResult( target ) );
+        target.flush();
+    }
+
+    /**
+     * Transform a file based on an XSLT transformation and stream the
+     * result into the passed target.  Access to non-existent dtds is
+     * ignored.  The systemId of the stylesheet is set, so that access
+     * on the stylesheet via the xls 'document( '' )' operation works.
+     * Note that the encoding declared in the stylesheet is not applied
+     * to a character target.
+     *
+     * @param stylesheet The transformation.
+     * @param datafile The file to transform.
+     * @param parameters Parameters for the stylesheet.
+     * @param target Receives the result.  Not closed.
+     * @throws Exception In case of an error.
+     */
+    public static void transform(
+            File stylesheet,
+            File datafile,
+            Map<String,Object> parameters,
+            Writer target )
+                    throws Exception
+    {
+        transformImpl(
+                newTransformer( TEMPLATES.get( stylesheet.toPath() ), parameters ),
+                new FileInputStream( datafile ),
+                new StreamResult( target ) );
+        target.flush();
+    }
+
+    /**
+     * Transform a file based on an XSLT transformation and write the
+     * result into the passed file.  An existing file is replaced when
+     * the transformation succeeded and is not modified on failure.
+     * Access to non-existent dtds is ignored.  The systemId of the
+     * stylesheet is set, so that access on the stylesheet via the xls
+     * 'document( '' )' operation works.
+     *
+     * @param stylesheet The transformation.
+     * @param datafile The file to transform.
+     * @param parameters Parameters for the stylesheet.
+     * @param target The file receiving the result.
+     * @throws Exception In case of an error.
+     */
+    public static void transform(
+            File stylesheet,
+            File datafile,
+            Map<String,Object> parameters,
+            Path target )
+                    throws Exception
+    {
+        writeAtomically(
+                target,
+                os -> transform(
+                        stylesheet,
+                        datafile,
+                        parameters,
+                        os ) );
+    }
+
+    /**
+     * Write a file.  The data is written to a temporary file in the
+     * target directory, which replaces the target if writing succeeded.
+     * On failure the target is not modified.
+     *
+     * @param target The file to write.
+     * @param writer Writes the data into the passed stream.
+     * @throws Exception In case of an error.
+     */
+    private static void writeAtomically(
+            Path target,
+            ConsumerX<OutputStream> writer )
+                    throws Exception
+    {
+        var absolute = target.toAbsolutePath();
+        var temp = absolute.resolveSibling( String.format(
+                ".%s.%x.tmp",
+                absolute.getFileName(),
+                ThreadLocalRandom.current().nextLong() ) );
+
+        try
+        {
+            try ( var os = new BufferedOutputStream( Files.newOutputStream(
+                    temp,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE ) ) )
+            {
+                writer.accept( os );
+            }
+
+            try
+            {
+                Files.move(
+                        temp,
+                        absolute,
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+            }
+            catch ( AtomicMoveNotSupportedException e )
+            {
+                Files.move(
+                        temp,
+                        absolute,
+                        StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists( temp );
+        }
+    }
+
+    /**
+     * Transform a file based on an XSLT transformation and stream the
+     * result into the passed target.  Access to non-existent dtds is
+     * ignored.  The passed input streams get closed after processing.
+     *
+     * @param stylesheet The stylesheet.
+     * @param datafile The input to process.
+     * @param parameters Parameters to be passed to the stylesheet.
+     * @param target Receives the result.  Not closed.
+     * @throws Exception In case of an error.
+     */
+    public static void transform(
+            InputStream stylesheet,
+            InputStream datafile,
+            Map<String,Object> parameters,
+            OutputStream target )
+                    throws Exception
+    {
+        transformImpl(
+                stylesheet,
+                datafile,
+                null,
+                parameters,
+                new StreamResult( target ) );
+        target.flush();
+    }
+
+    /**
+     * Transform a file based on an XSLT transformation and stream the
+     * result into the passed target.  Access to non-existent dtds is
+     * ignored.  The passed input streams get closed after processing.
+     * Note that the encoding declared in the stylesheet is not applied
+     * to a character target.
+     *
+     * @param stylesheet The stylesheet.
+     * @param datafile The input to process.
+     * @param parameters Parameters to be passed to the stylesheet.
+     * @param target Receives the result.  Not closed.
+     * @throws Exception In case of an error.
+     */
+    public static void transform(
+            InputStream stylesheet,
+            InputStream datafile,
+            Map<String,Object> parameters,
+            Writer target )
+                    throws Exception
+    {
+        transformImpl(
+                stylesheet,
+                datafile,
+                null,
+                parameters,
+                new StreamResult( target ) );
+        target.flush();
+    }
+
+    /**
+     * Transform a set of files using a single compiled stylesheet.
+     * Access to non-existent dtds is ignored.  The systemId of the
+     * stylesheet is set, so that access on the stylesheet via the xls
+     * 'document( '' )' operation works.  Existing target files are
+     * overwritten.
+     *
+     * @param stylesheet The transformation.
+     * @param parameters Parameters for the stylesheet.
+     * @param datafiles The files to transform.
+     * @param targets Maps a file to transform to the file receiving
+     * the result.
+     * @throws Exception In case of an error.  Processing stops on the
+     * first error.
+     */
+    public static void transform(
+            File stylesheet,
+            Map<String,Object> parameters,
+            Collection<File> datafiles,
+            Function<File, Path> targets )
+                    throws Exception
+    {
+        transform(
+                stylesheet,
+                parameters,
+                datafiles,
+                targets,
+                1 );
+    }
+
+    /**
+     * Transform a set of files concurrently using a single compiled
+     * stylesheet.  Each worker uses its own transformer.  See
+     * {@link #transform(File, Map, Collection, Function)}.
+     *
+     * @param stylesheet The transformation.
+     * @param parameters Parameters for the stylesheet.
+     * @param datafiles The files to transform.
+     * @param targets Maps a file to transform to the file receiving
+     * the result.  Called concurrently.
+     * @param workers The number of concurrently processed files.
+     * @throws Exception In case of an error.  Processing stops on the
+     * first error, further errors are added as suppressed exceptions.
+     */
+    public static void transform(
+            File stylesheet,
+            Map<String,Object> parameters,
+            Collection<File> datafiles,
+            Function<File, Path> targets,
+            int workers )
+                    throws Exception
+    {
+        if ( workers <= 0 )
+            throw new IllegalArgumentException( "workers must be > 0" );
+
+        var templates =
+                TEMPLATES.get( stylesheet.toPath() );
+        var queue =
+                new ConcurrentLinkedQueue<File>( datafiles );
+        var failure =
+                new AtomicReference<Exception>();
+
+        Callable<Void> worker = () -> {
+            try
+            {
+                var transformer =
+                        newTransformer( templates, parameters );
+
+                for ( var c = queue.poll() ;
+                        c != null && failure.get() == null ;
+                        c = queue.poll() )
+                    transformImpl( transformer, c, targets.apply( c ) );
+            }
+            catch ( Exception e )
+            {
+                if ( ! failure.compareAndSet( null, e ) )
+                    failure.get().addSuppressed( e );
+            }
+            return null;
+        };
+
+        workers = Math.min( workers, datafiles.size() );
+
+        if ( workers == 1 )
+            worker.call();
+        else if ( workers > 1 )
+        {
+            var executor = Executors.newFixedThreadPool( workers );
+            try
+            {
+                executor.invokeAll( Collections.nCopies( workers, worker ) );
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+
+        if ( failure.get() != null )
+            throw failure.get();
+    }
+
+    /**
+     * Transform all xml files in a directory concurrently using a
+     * single compiled stylesheet.  The results are written into the
+     * target directory using the name of the transformed file.
+     * Subdirectories are not processed.
+     *
+     * @param stylesheet The transformation.
+     * @param parameters Parameters for the stylesheet.
+     * @param sourceDirectory The directory holding the files to transform.
+     * @param targetDirectory The directory receiving the results.  Created
+     * if it does not exist.
+     * @param workers The number of concurrently processed files.
+     * @return The number of transformed files.
+     * @throws Exception In case of an error.
+     */
+    public static int transformDirectory(
+            File stylesheet,
+            Map<String,Object> parameters,
+            Path sourceDirectory,
+            Path targetDirectory,
+            int workers )
+                    throws Exception
+    {
+        List<File> datafiles;
+
+        try ( var files = Files.list( sourceDirectory ) )
+        {
+            datafiles = files
+                    .filter( Files::isRegularFile )
+                    .filter( c -> c.getFileName().toString().toLowerCase().endsWith( ".xml" ) )
+                    .map( Path::toFile )
+                    .collect( Collectors.toList() );
+        }
+
+        Files.createDirectories( targetDirectory );
+
+        transform(
+                stylesheet,
+                parameters,
+                datafiles,
+                c -> targetDirectory.resolve( c.getName() ),
+                workers );
+
+        return datafiles.size();
+    }
+
+    /**
+     * The compiled stylesheets of the file based operations.
+     */
+    private static final TemplatesCache TEMPLATES =
+            new TemplatesCache( 32 );
+
+    /**
+     * Compile a stylesheet.  The passed stream gets closed.
+     *
+     * @param stylesheet The stylesheet.
+     * @param systemId An optional system id.  Pass null if not needed.
+     * @return The compiled stylesheet.
+     * @throws IOException If closing the stream failed.
+     * @throws TransformerConfigurationException In case of an error.
+     */
+    static Templates compile(
+            InputStream stylesheet,
+            String systemId )
+                    throws IOException, TransformerConfigurationException
+    {
+        return compile( stylesheet, systemId, null );
+    }
+
+    /**
+     * Compile a stylesheet.  The passed stream gets closed.
+     *
+     * @param stylesheet The stylesheet.
+     * @param systemId An optional system id.  Pass null if not needed.
+     * @param resolver An optional resolver for included and imported
+     * stylesheets.  Pass null if not needed.
+     * @return The compiled stylesheet.
+     * @throws IOException If closing the stream failed.
+     * @throws TransformerConfigurationException In case of an error.
+     */
+    static Templates compile(
+            InputStream stylesheet,
+            String systemId,
+            URIResolver resolver )
+                    throws IOException, TransformerConfigurationException
+    {
+        try ( stylesheet )
+        {
+            StreamSource stylesource =
+                    new StreamSource(stylesheet);
+
+            if ( StringUtil.hasContent( systemId ) )
+                stylesource.setSystemId(
+                        systemId );
+
+            var factory = TransformerFactory.newInstance();
+            if ( resolver != null )
+                factory.setURIResolver( resolver );
+
+            return factory.newTemplates(
+                    stylesource );
+        }
+    }
+
+    private static Transformer newTransformer(
+            Templates templates,
+            Map<String,Object> parameters )
+                    throws TransformerConfigurationException
+    {
+        Transformer result =
+                templates.newTransformer();
+
+        parameters.forEach(
+                (k,v) -> result.setParameter( k, v ) );
+
+        return result;
+    }
+
+    /**
+     * Internal implementation of transform returning the result as a
+     * string.
      *
      * @param stylesheet The stylesheet.
      * @param datafile The input to process.
@@ -171,47 +601,111 @@ public class XmlUtil
             String systemId,
             Map<String,Object> parameters )
                     throws Exception
+    {
+        ByteArrayOutputStream bos =
+                new ByteArrayOutputStream();
+
+        transformImpl(
+                stylesheet,
+                datafile,
+                systemId,
+                parameters,
+                new StreamResult( bos ) );
+
+        return bos.toString();
+    }
+
+    /**
+     * Internal implementation of transform including resource management.
+     * The passed input streams get closed after processing.
+     *
+     * @param stylesheet The stylesheet.
+     * @param datafile The input to process.
+     * @param systemId An optional system id.  Pass null if not needed.
+     * @param parameters Parameters to be passed to the stylesheet.
+     * @param result Receives the processing result.
+     * @throws Exception In case of an error.
+     */
+    private static void transformImpl(
+            InputStream stylesheet,
+            InputStream datafile,
+            String systemId,
+            Map<String,Object> parameters,
+            Result result )
+                    throws Exception
     {
         try ( Disposer d = new Disposer() )
         {
             d.register( stylesheet );
             d.register( datafile );
 
-            DocumentBuilderFactory factory =
-                    DocumentBuilderFactory.newInstance();
-            ByteArrayOutputStream bos =
-                    new ByteArrayOutputStream();
-            DocumentBuilder builder =
-                    factory.newDocumentBuilder();
-
-            builder.setEntityResolver(
-                    EMPTY_DTD_RESOLVER );
-            Document document =
-                    builder.parse(datafile);
-            TransformerFactory tFactory =
-                    TransformerFactory.newInstance();
-            StreamSource stylesource =
-                    new StreamSource(stylesheet);
-
-            if ( StringUtil.hasContent( systemId ) )
-                stylesource.setSystemId(
-                        systemId );
+            transformImpl(
+                    newTransformer( compile( stylesheet, systemId ), parameters ),
+                    datafile,
+                    result );
+        }
+    }
 
-            Transformer transformer =
-                    tFactory.newTransformer(stylesource);
+    /**
+     * Transform a file into a target file.
+     *
+     * @param transformer The transformer to use.
+     * @param datafile The file to transform.
+     * @param target The file receiving the result.
+     * @throws Exception In case of an error.
+     */
+    private static void transformImpl(
+            Transformer transformer,
+            File datafile,
+            Path target )
+                    throws Exception
+    {
+        // Open the input first to not create a target for missing input.
+        try ( var is = new FileInputStream( datafile ) )
+        {
+            writeAtomically(
+                    target,
+                    os -> transformImpl(
+                            transformer,
+                            is,
+                            new StreamResult( os ) ) );
+        }
+    }
 
-            parameters.forEach(
-                    (k,v) -> transformer.setParameter( k, v ) );
+    /**
+     * Transform a document.  The passed input stream gets closed after
+     * processing.  The input is parsed directly into the transformer,
+     * no intermediate DOM is created.
+     *
+     * @param transformer The transformer to use.
+     * @param datafile The input to process.
+     * @param result Receives the processing result.
+     * @throws Exception In case of an error.
+     */
+    private static void transformImpl(
+            Transformer transformer,
+            InputStream datafile,
+            Result result )
+                    throws Exception
+    {
+        try ( datafile )
+        {
+            // Not namespace aware, same as the DOM based transformation
+            // used before.
+            SAXParserFactory factory =
+                    SAXParserFactory.newInstance();
+            factory.setNamespaceAware( false );
+
+            XMLReader reader =
+                    factory.newSAXParser().getXMLReader();
+            reader.setEntityResolver(
+                    EMPTY_DTD_RESOLVER );
 
-            DOMSource source =
-                    new DOMSource(document);
-            StreamResult result =
-                    new StreamResult(bos);
+            SAXSource source =
+                    new SAXSource( reader, new InputSource( datafile ) );
             transformer.transform(
                     source,
                     result);
-
-            return bos.toString();
         }
     }
 
@@ -258,124 +752,85 @@ public class XmlUtil
     }
 
     /**
-     * Evaluate a set of xpath-expressions against an XML-document.
-     *
-     * @param xmlDocument The document.
-     * @param expressions The xpath.
-     * @return The result of the expressions in a list.
-     * @throws Exception In case of an error.
-     * @see #getXPath(File, String)
+     * The xpath evaluators per thread.  These hold the compiled
+     * expressions.
      */
-    private static List<String> getXPath(
-            Document xmlDocument,
-            String ... expressions )
-                    throws Exception
-    {
-        XPathFactory xPathfactory =
-                XPathFactory.newInstance();
-        XPath xpath =
-                xPathfactory.newXPath();
-
-        xpath.setNamespaceContext(
-                getNamespaces( xmlDocument ) );
-
-        var result =
-                new ArrayList<String>();
-
-        for ( String c : expressions )
-        {
-            XPathExpression expr =
-                    xpath.compile( c );
+    static final ThreadLocal<XPathEvaluator> XPATH =
+            ThreadLocal.withInitial( XPathEvaluator::new );
 
-            result.add(
-                    expr.evaluate( xmlDocument, XPathConstants.STRING ).toString() );
-        }
-
-        return result;
-    }
-
-    /**
-     * Evaluate a set of xpath-expressions against an XML-document.
-     *
-     * @param xmlDocument The document.
-     * @param expressions The xpath.
-     * @return The result of the expressions in a list.
-     * @throws Exception In case of an error.
-     * @see #getXPath(File, String)
-     */
-    private static List<List<String>> getXPathNodes(
-            Document xmlDocument,
-            String ... expressions )
-                    throws Exception
+    public static List<String> getXPath(
+            InputStream xmlDocument,
+            String ... expressions
+            ) throws Exception
     {
-        XPathFactory xPathfactory =
-                XPathFactory.newInstance();
-        XPath xpath =
-                xPathfactory.newXPath();
-
-        xpath.setNamespaceContext(
-                getNamespaces( xmlDocument ) );
-
-        var result =
-                new ArrayList<List<String>>();
-
-        for ( String c : expressions )
+        try ( xmlDocument )
         {
-            XPathExpression expr =
-                    xpath.compile( c );
-
-            NodeList x =
-                    (NodeList)expr.evaluate( xmlDocument, XPathConstants.NODESET );
+            var evaluator =
+                    XPATH.get();
+            Document doc =
+                    evaluator.parse( xmlDocument );
 
-            var list = new ArrayList<String>( x.getLength() );
+            var result =
+                    new ArrayList<String>();
 
-            for ( int i = 0 ; i < x.getLength() ; i++ )
-                list.add( x.item( i ).getTextContent()  );
+            for ( String c : expressions )
+                result.add( evaluator.evaluate( doc, c ) );
 
-            result.add( list );
+            return result;
         }
-
-        return result;
     }
 
-    public static List<String> getXPath(
+    public static List<List<String>> getXPathNodes(
             InputStream xmlDocument,
             String ... expressions
             ) throws Exception
     {
         try ( xmlDocument )
         {
-            DocumentBuilderFactory factory =
-                    DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware( true );
-
-            DocumentBuilder builder =
-                    factory.newDocumentBuilder();
+            var evaluator =
+                    XPATH.get();
             Document doc =
-                    builder.parse( xmlDocument );
+                    evaluator.parse( xmlDocument );
 
-            return getXPath( doc, expressions );
+            var result =
+                    new ArrayList<List<String>>();
+
+            for ( String c : expressions )
+                result.add( evaluator.evaluateNodes( doc, c ) );
+
+            return result;
         }
     }
 
-    public static List<List<String>> getXPathNodes(
+    /**
+     * Evaluate an xpath against an XML-document.  If the expression is in
+     * the subset supported by {@link StreamingPath} the document is
+     * streamed and matches are delivered while it is read.  Otherwise
+     * the document is parsed completely.  Closing the returned stream
+     * closes the passed stream.
+     *
+     * @param xmlDocument The document.
+     * @param expression The xpath.
+     * @return The text content of the selected nodes.
+     * @throws Exception In case of an error.
+     */
+    public static Stream<String> streamXPathNodes(
             InputStream xmlDocument,
-            String ... expressions
-            ) throws Exception
+            String expression )
+                    throws Exception
     {
-        try ( xmlDocument )
-        {
-            DocumentBuilderFactory factory =
-                    DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware( true );
-
-            DocumentBuilder builder =
-                    factory.newDocumentBuilder();
-            Document doc =
-                    builder.parse( xmlDocument );
+        StreamingPath path;
 
-            return getXPathNodes( doc, expressions );
+        try
+        {
+            path = StreamingPath.compile( expression );
         }
+        catch ( IllegalArgumentException e )
+        {
+            return getXPathNodes( xmlDocument, expression ).stream();
+        }
+
+        return path.stream( xmlDocument );
     }
 
     public static <R> R getXPathAs(
@@ -403,32 +858,6 @@ public class XmlUtil
         return result;
     }
 
-    private static NamespaceContextImpl getNamespaces( Document doc ) throws Exception
-    {
-        XPathFactory xPathfactory =
-                XPathFactory.newInstance();
-        XPath xpath =
-                xPathfactory.newXPath();
-
-        XPathExpression expr = xpath.compile( "//namespace::*" );
-
-        NodeList x = (NodeList)expr.evaluate( doc, XPathConstants.NODESET );
-
-        NamespaceContextImpl result =
-                new NamespaceContextImpl();
-
-        for ( int i = 0 ; i < x.getLength() ; i++ )
-        {
-            var q =
-                    x.item( i );
-            result.put(
-                    q.getLocalName(),
-                    q.getNodeValue() );
-        }
-
-        return result;
-    }
-
     private XmlUtil()
     {
         throw new AssertionError();
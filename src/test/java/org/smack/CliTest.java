@@ -0,0 +1,65 @@
+package org.smack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import org.junit.Test;
+import org.smack.util.FileUtil;
+import org.smack.util.io.Redirect;
+import org.smack.util.io.Redirect.StdStream;
+
+public class CliTest
+{
+    @Test
+    public void testXslDirCreatesTarget() throws Exception
+    {
+        var directory = Files.createTempDirectory( getClass().getSimpleName() );
+
+        try
+        {
+            var stylesheet = directory.resolve( "simple.xsl" );
+            var source = Files.createDirectory( directory.resolve( "source" ) );
+            var target = directory.resolve( "target" );
+
+            try ( var is = getClass().getResourceAsStream( "util/xml/simple.xsl" ) )
+            {
+                Files.copy( is, stylesheet );
+            }
+            try ( var is = getClass().getResourceAsStream( "util/xml/simple.xml" ) )
+            {
+                Files.copy( is, source.resolve( "simple.xml" ) );
+            }
+
+            try ( var out = new Redirect( StdStream.out ) )
+            {
+                Cli.main( new String[] {
+                        "xslDir",
+                        stylesheet.toString(),
+                        source.toString(),
+                        target.toString() } );
+
+                assertEquals( "1 files transformed.", out.content().get( 0 ) );
+            }
+
+            assertTrue( Files.isDirectory( target ) );
+            assertEquals(
+                    FileUtil.readLines(
+                            getClass().getResourceAsStream( "util/xml/simple.out" ) ),
+                    Files.readAllLines( target.resolve( "simple.xml" ) ) );
+        }
+        finally
+        {
+            try ( var files = Files.walk( directory ) )
+            {
+                files.sorted( Comparator.reverseOrder() )
+                    .map( Path::toFile )
+                    .forEach( File::delete );
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.smack.application;
+
+import java.awt.Point;
+
+/**
+ * Uses a type whose converter is added after the first instance
+ * was created.
+ */
+public class ApplicationUnderTestLateConverter extends CliApplication
+{
+    @Property
+    public Point point = new Point();
+
+    @Command
+    public void point()
+    {
+        out( "%d,%d%n", point.x, point.y );
+    }
+
+    @Command
+    public void move( Point p )
+    {
+        out( "%d,%d%n", point.x + p.x, point.y + p.y );
+    }
+
+    static void registerPoint()
+    {
+        addConverter( Point.class, s -> {
+            var split = s.split( "," );
+            return new Point(
+                    Integer.parseInt( split[0] ),
+                    Integer.parseInt( split[1] ) );
+        } );
+    }
+
+    public static void main( String[] argv )
+    {
+        launch( ApplicationUnderTestLateConverter::new, argv );
+    }
+}
@@ -0,0 +1,31 @@
+package org.smack.application;
+
+/**
+ * Tests concurrent batch execution.
+ */
+public class ApplicationUnderTestParallel
+    extends CliApplication
+{
+    /**
+     * Sleeps longer for smaller arguments, so that later lines
+     * complete first.
+     */
+    @Command( parallel = true )
+    public void sleep( int i ) throws InterruptedException
+    {
+        Thread.sleep( (10 - i) * 20 );
+        out( "%s:%d%n", currentCommand(), i );
+        err( "%s:%d%n", currentCommand(), i );
+    }
+
+    @Command
+    public void serial( int i )
+    {
+        out( "%s:%d%n", currentCommand(), i );
+    }
+
+    public static void main( String[] argv )
+    {
+        launch( ApplicationUnderTestParallel::new, argv );
+    }
+}
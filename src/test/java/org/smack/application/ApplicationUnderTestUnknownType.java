@@ -18,6 +18,22 @@ public class ApplicationUnderTestUnknownType
         out( "%s( %d )", currentCommand(), i );
     }
 
+    /**
+     * Must fail, no mapper.
+     * @param r Parameter
+     */
+    @Command
+    private void cmdRunnable( Runnable r )
+    {
+        r.run();
+    }
+
+    @Command
+    private void cmdInt( int i )
+    {
+        out( "%s:%d%n", currentCommand(), i );
+    }
+
     public static void main( String[] argv )
     {
         launch( ApplicationUnderTestUnknownType.class, argv );
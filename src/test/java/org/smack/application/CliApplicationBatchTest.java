@@ -0,0 +1,197 @@
+package org.smack.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class CliApplicationBatchTest
+{
+    private static final String SCRIPT =
+            "# A comment.\n" +
+            "cmdInt 313\n" +
+            "\n" +
+            "cmdBoolean \"true\"\n" +
+            "cmdInt notANumber\n" +
+            "unknown\n";
+
+    @Test
+    public void testBatch() throws IOException
+    {
+        final var err =
+                new ArrayList<String>();
+        final var out =
+                new ArrayList<String>();
+        final var failed =
+                new int[1];
+
+        CliApplicationTest.execCli(
+                out,
+                err,
+                argv -> {
+                    try
+                    {
+                        failed[0] = CliApplication.launchBatch(
+                                ApplicationUnderTest::new,
+                                new StringReader( SCRIPT ) );
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new RuntimeException( e );
+                    }
+                } );
+
+        assertEquals( 2, failed[0] );
+
+        assertEquals( 2, out.size() );
+        assertEquals( "cmdInt:313", out.get( 0 ) );
+        assertEquals( "cmdBoolean:true", out.get( 1 ) );
+
+        assertEquals( "[2] ok: cmdInt 313 (", err.get( 0 ).substring( 0, 20 ) );
+        assertTrue( err.get( 1 ).startsWith( "[4] ok: cmdBoolean \"true\" (" ) );
+        assertTrue( err.contains( "Unknown command 'unknown'." ) );
+        assertTrue( err.get( err.size()-1 ).startsWith( "4 commands, 2 failed, total " ) );
+    }
+
+    @Test
+    public void testParallel() throws IOException
+    {
+        final var script = new StringBuilder();
+        for ( int i = 0 ; i < 5 ; i++ )
+            script.append( "sleep " ).append( i ).append( '\n' );
+        script.append( "serial 5\n" );
+        for ( int i = 6 ; i < 10 ; i++ )
+            script.append( "sleep " ).append( i ).append( '\n' );
+
+        final var err =
+                new ArrayList<String>();
+        final var out =
+                new ArrayList<String>();
+
+        CliApplicationTest.execCli(
+                out,
+                err,
+                argv -> {
+                    try
+                    {
+                        assertEquals( 0, CliApplication.launchBatch(
+                                ApplicationUnderTestParallel::new,
+                                new StringReader( script.toString() ),
+                                4 ) );
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new RuntimeException( e );
+                    }
+                } );
+
+        assertEquals( 10, out.size() );
+        for ( int i = 0 ; i < 10 ; i++ )
+        {
+            var command = i == 5 ? "serial" : "sleep";
+            assertEquals( command + ":" + i, out.get( i ) );
+        }
+
+        // The output of each line precedes its report.
+        assertEquals( "sleep:0", err.get( 0 ) );
+        assertTrue( err.get( 1 ).startsWith( "[1] ok: sleep 0 (" ) );
+        assertTrue( err.get( 10 ).startsWith( "[6] ok: serial 5 (" ) );
+        assertTrue( err.get( err.size()-1 ).startsWith( "10 commands, 0 failed, total " ) );
+    }
+
+    @Test
+    public void testOutputOrder()
+    {
+        var bytes = new ByteArrayOutputStream();
+
+        try ( var stream = new PrintStream( bytes ) )
+        {
+            assertTrue( CliApplication.launchGuarded(
+                    ApplicationUnderTestParallel::new,
+                    new String[] { "sleep", "9" },
+                    null,
+                    stream,
+                    stream ) );
+        }
+
+        // Buffered out is flushed before err is written.
+        var nl = System.lineSeparator();
+        assertEquals(
+                "sleep:9" + nl + "sleep:9" + nl,
+                bytes.toString() );
+    }
+
+    @Test
+    public void testBatchFile() throws IOException
+    {
+        var script = Files.createTempFile( "smack", ".txt" );
+
+        try
+        {
+            Files.writeString( script, SCRIPT );
+
+            final var out =
+                    new ArrayList<String>();
+
+            CliApplicationTest.execCli(
+                    out,
+                    new ArrayList<String>(),
+                    ApplicationUnderTest::main,
+                    "@" + script );
+
+            assertEquals( 2, out.size() );
+        }
+        finally
+        {
+            Files.delete( script );
+        }
+    }
+
+    @Test
+    public void testBatchEscape() throws IOException
+    {
+        final var out =
+                new ArrayList<String>();
+        final var err =
+                new ArrayList<String>();
+
+        CliApplicationTest.execCli(
+                out,
+                err,
+                ApplicationUnderTest::main,
+                "@@user" );
+
+        // Executed as a command, not as a batch file.
+        assertEquals( 0, out.size() );
+        assertTrue( String.join( "", err ).contains( "Unknown command '@user'" ) );
+    }
+
+    @Test
+    public void testOutputCharset() throws IOException
+    {
+        var bytes = new ByteArrayOutputStream();
+
+        try ( var stream = new PrintStream( bytes, true, StandardCharsets.UTF_16LE.name() ) )
+        {
+            assertTrue( CliApplication.launchGuarded(
+                    ApplicationUnderTest::new,
+                    new String[] { "cmdInt", "313" },
+                    null,
+                    stream,
+                    stream ) );
+        }
+
+        // Output is encoded by the target stream.
+        assertEquals(
+                "cmdInt:313" + System.lineSeparator(),
+                bytes.toString( StandardCharsets.UTF_16LE ) );
+    }
+}
@@ -113,4 +113,37 @@ public class CliApplicationPropertyTest
         assertEquals( 1, out.size() );
         assertEquals( "ALL", out.get( 0 ) );
     }
+
+    @Test
+    public void testConverterAddedLater() throws IOException
+    {
+        final var err =
+                new ArrayList<String>();
+        final var out =
+                new ArrayList<String>();
+
+        // Creates and caches the command and property maps.
+        CliApplicationTest.execCli(
+                out,
+                err,
+                ApplicationUnderTestLateConverter::main,
+                "point" );
+
+        assertEquals( 0, err.size() );
+        assertEquals( "0,0", out.get( 0 ) );
+
+        ApplicationUnderTestLateConverter.registerPoint();
+
+        out.clear();
+        CliApplicationTest.execCli(
+                out,
+                err,
+                ApplicationUnderTestLateConverter::main,
+                "move",
+                "3,4",
+                "-point=1,2" );
+
+        assertEquals( 0, err.size() );
+        assertEquals( "4,6", out.get( 0 ) );
+    }
 }
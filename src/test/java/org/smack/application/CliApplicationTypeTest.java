@@ -188,4 +188,34 @@ public class CliApplicationTypeTest
         assertEquals( 0, out.size() );
         assertTrue( err.size() > 0 );
     }
+
+    @Test
+    public void TestUnknownTypeCommand() throws Exception
+    {
+        final var err =
+                new ArrayList<String>();
+        final var out =
+                new ArrayList<String>();
+
+        // Commands with convertible parameters are not affected.
+        CliApplicationTest.execCli(
+                out,
+                err,
+                ApplicationUnderTestUnknownType::main,
+                "cmdInt", "313" );
+
+        assertEquals( "cmdInt:313", out.get( 0 ) );
+        assertEquals( 0, err.size() );
+
+        out.clear();
+
+        CliApplicationTest.execCli(
+                out,
+                err,
+                ApplicationUnderTestUnknownType::main,
+                "cmdRunnable", "run" );
+
+        assertEquals( 0, out.size() );
+        assertTrue( String.join( "", err ).contains( "No mapper for Runnable" ) );
+    }
 }
@@ -0,0 +1,163 @@
+package org.smack.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class CliServerTest
+{
+    private static String[] argv( String ... argv )
+    {
+        return argv;
+    }
+
+    @Test
+    public void testExecute() throws IOException
+    {
+        try ( var server = new CliServer( ApplicationUnderTest::new, 0, 2 ) )
+        {
+            var out = new ByteArrayOutputStream();
+            var err = new ByteArrayOutputStream();
+
+            int status = CliClient.execute(
+                    server.getPort(),
+                    argv( "cmdInt", "313" ),
+                    out,
+                    err );
+
+            assertEquals( 0, status );
+            assertEquals(
+                    "cmdInt:313" + System.lineSeparator(),
+                    out.toString( StandardCharsets.UTF_8 ) );
+            assertEquals( 0, err.size() );
+        }
+    }
+
+    @Test
+    public void testFailure() throws IOException
+    {
+        try ( var server = new CliServer( ApplicationUnderTest::new, 0, 2 ) )
+        {
+            var out = new ByteArrayOutputStream();
+            var err = new ByteArrayOutputStream();
+
+            int status = CliClient.execute(
+                    server.getPort(),
+                    argv( "unknown" ),
+                    out,
+                    err );
+
+            assertEquals( 1, status );
+            assertEquals( 0, out.size() );
+            assertTrue( err.toString( StandardCharsets.UTF_8 ).contains(
+                    "Unknown command 'unknown'." ) );
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception
+    {
+        var executor = Executors.newFixedThreadPool( 8 );
+
+        try ( var server = new CliServer( ApplicationUnderTest::new, 0, 4 ) )
+        {
+            var tasks = new ArrayList<Callable<String>>();
+            for ( int i = 0 ; i < 64 ; i++ )
+            {
+                var value = Integer.toString( i );
+                tasks.add( () -> {
+                    var out = new ByteArrayOutputStream();
+                    CliClient.execute(
+                            server.getPort(),
+                            argv( "cmdInt", value ),
+                            out,
+                            new ByteArrayOutputStream() );
+                    return out.toString( StandardCharsets.UTF_8 );
+                } );
+            }
+
+            var results = executor.invokeAll( tasks );
+            for ( int i = 0 ; i < results.size() ; i++ )
+            {
+                assertEquals(
+                        "cmdInt:" + i + System.lineSeparator(),
+                        results.get( i ).get() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Send a raw request and return the exit status.
+     */
+    private static int sendRaw( int port, int ... ints ) throws IOException
+    {
+        try ( var socket = new Socket( InetAddress.getLoopbackAddress(), port ) )
+        {
+            var request = new DataOutputStream( socket.getOutputStream() );
+            for ( var c : ints )
+                request.writeInt( c );
+            request.flush();
+
+            var response = new DataInputStream( socket.getInputStream() );
+            while ( true )
+            {
+                byte type = response.readByte();
+                int length = response.readInt();
+
+                if ( type == CliServer.FRAME_EXIT )
+                    return length;
+
+                response.readFully( new byte[ length ] );
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidRequest() throws IOException
+    {
+        try ( var server = new CliServer( ApplicationUnderTest::new, 0, 2 ) )
+        {
+            int port = server.getPort();
+
+            assertEquals(
+                    CliServer.STATUS_INVALID_REQUEST,
+                    sendRaw( port, -1 ) );
+            assertEquals(
+                    CliServer.STATUS_INVALID_REQUEST,
+                    sendRaw( port, Integer.MAX_VALUE ) );
+            assertEquals(
+                    CliServer.STATUS_INVALID_REQUEST,
+                    sendRaw( port, 1, -5 ) );
+            assertEquals(
+                    CliServer.STATUS_INVALID_REQUEST,
+                    sendRaw( port, 1, Integer.MAX_VALUE ) );
+
+            // The server is still operational.
+            var out = new ByteArrayOutputStream();
+            assertEquals( 0, CliClient.execute(
+                    port,
+                    argv( "cmdInt", "7" ),
+                    out,
+                    new ByteArrayOutputStream() ) );
+            assertEquals(
+                    "cmdInt:7" + System.lineSeparator(),
+                    out.toString( StandardCharsets.UTF_8 ) );
+        }
+    }
+}
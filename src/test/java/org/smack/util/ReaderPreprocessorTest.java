@@ -0,0 +1,122 @@
+package org.smack.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ReaderPreprocessorTest
+{
+    private static final String NL = System.lineSeparator();
+
+    private final Map<String,String> _files = Map.of(
+            "part_a", "alpha\r\n  #include \"part_b\"\r\n",
+            "part_b", "beta\rgamma" );
+
+    private final StreamPreprocessor.Resolver _resolver =
+            new StreamPreprocessor.Resolver()
+    {
+        @Override
+        public InputStream resolveName( String name ) throws IOException
+        {
+            var content = _files.get( name );
+            if ( content == null )
+                throw new IOException( name );
+            return new ByteArrayInputStream(
+                    content.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        @Override
+        public StreamPreprocessor.Resolver reposition( String name )
+        {
+            return this;
+        }
+    };
+
+    private static final String INPUT =
+            "first\n#include part_a\n\nlast";
+
+    private static final String EXPECTED =
+            "first" + NL +
+            "alpha" + NL + "beta" + NL + "gamma" + NL +
+            NL +
+            "last" + NL;
+
+    private ReaderPreprocessor create()
+    {
+        return new ReaderPreprocessor(
+                new StringReader( INPUT ),
+                _resolver,
+                StandardCharsets.UTF_8,
+                "input" );
+    }
+
+    @Test
+    public void testRead() throws IOException
+    {
+        try ( var rp = create() )
+        {
+            var result = new StringBuilder();
+            var buffer = new char[ 3 ];
+            for ( int n = rp.read( buffer ) ; n != -1 ; n = rp.read( buffer ) )
+                result.append( buffer, 0, n );
+
+            assertEquals( EXPECTED, result.toString() );
+        }
+    }
+
+    @Test
+    public void testSameAsStream() throws IOException
+    {
+        var stream = new StreamPreprocessor(
+                new ByteArrayInputStream( INPUT.getBytes( StandardCharsets.UTF_8 ) ),
+                _resolver,
+                StandardCharsets.UTF_8 );
+
+        var result = new StringBuilder();
+        try ( var rp = create() )
+        {
+            for ( int c = rp.read() ; c != -1 ; c = rp.read() )
+                result.append( (char)c );
+        }
+
+        assertEquals(
+                new String( stream.readAllBytes(), StandardCharsets.UTF_8 ),
+                result.toString() );
+    }
+
+    @Test
+    public void testLineNumbers() throws IOException
+    {
+        try ( var rp = create() )
+        {
+            var buffer = new char[ 1 ];
+
+            // first
+            rp.read( buffer );
+            assertEquals( "input", rp.getName() );
+            assertEquals( 1, rp.getLineNumber() );
+
+            while ( buffer[0] != 'b' )
+                rp.read( buffer );
+            assertEquals( "part_b", rp.getName() );
+            assertEquals( 1, rp.getLineNumber() );
+
+            while ( buffer[0] != 'g' )
+                rp.read( buffer );
+            assertEquals( "part_b", rp.getName() );
+            assertEquals( 2, rp.getLineNumber() );
+
+            while ( buffer[0] != 'l' )
+                rp.read( buffer );
+            assertEquals( "input", rp.getName() );
+            assertEquals( 4, rp.getLineNumber() );
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.smack.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StreamPreprocessorTest
+{
+    private static final String NL = System.lineSeparator();
+
+    private final AtomicInteger _resolveCount = new AtomicInteger();
+
+    private final Map<String,String> _files = Map.of(
+            "part_a", "alpha" + NL + "#include \"part_b\"" + NL,
+            "part_b", "beta" );
+
+    private final StreamPreprocessor.Resolver _resolver =
+            new StreamPreprocessor.Resolver()
+    {
+        @Override
+        public InputStream resolveName( String name ) throws IOException
+        {
+            _resolveCount.incrementAndGet();
+
+            var content = _files.get( name );
+            if ( content == null )
+                throw new IOException( name );
+            return new ByteArrayInputStream(
+                    content.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        @Override
+        public StreamPreprocessor.Resolver reposition( String name )
+        {
+            return this;
+        }
+    };
+
+    private static final String INPUT =
+            "first" + NL + "#include part_a" + NL + "#include part_a" + NL + "last";
+
+    private static final String EXPECTED =
+            "first" + NL +
+            "alpha" + NL + "beta" + NL +
+            "alpha" + NL + "beta" + NL +
+            "last" + NL;
+
+    private StreamPreprocessor create( Map<Object,byte[]> cache )
+    {
+        return new StreamPreprocessor(
+                new ByteArrayInputStream( INPUT.getBytes( StandardCharsets.UTF_8 ) ),
+                _resolver,
+                StandardCharsets.UTF_8,
+                cache );
+    }
+
+    @Test
+    public void testSingleByte() throws IOException
+    {
+        try ( var sp = create( null ) )
+        {
+            var result = new StringBuilder();
+            for ( int c = sp.read() ; c != -1 ; c = sp.read() )
+                result.append( (char)c );
+
+            assertEquals( EXPECTED, result.toString() );
+        }
+    }
+
+    @Test
+    public void testBulk() throws IOException
+    {
+        try ( var sp = create( null ) )
+        {
+            assertEquals(
+                    EXPECTED,
+                    new String( sp.readAllBytes(), StandardCharsets.UTF_8 ) );
+            assertEquals( 4, _resolveCount.get() );
+        }
+    }
+
+    @Test
+    public void testIncludeCache() throws IOException
+    {
+        var cache = new HashMap<Object,byte[]>();
+
+        try ( var sp = create( cache ) )
+        {
+            assertEquals(
+                    EXPECTED,
+                    new String( sp.readAllBytes(), StandardCharsets.UTF_8 ) );
+        }
+
+        assertEquals( 2, _resolveCount.get() );
+        assertEquals( 2, cache.size() );
+
+        try ( var sp = create( cache ) )
+        {
+            assertEquals(
+                    EXPECTED,
+                    new String( sp.readAllBytes(), StandardCharsets.UTF_8 ) );
+        }
+
+        assertEquals( 2, _resolveCount.get() );
+    }
+
+    /**
+     * Resolves names relative to a directory.
+     */
+    private class DirectoryResolver implements StreamPreprocessor.Resolver
+    {
+        private final String _directory;
+
+        DirectoryResolver( String directory )
+        {
+            _directory = directory;
+        }
+
+        @Override
+        public InputStream resolveName( String name ) throws IOException
+        {
+            _resolveCount.incrementAndGet();
+
+            var content = _tree.get( _directory + name );
+            if ( content == null )
+                throw new IOException( name );
+            return new ByteArrayInputStream(
+                    content.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        @Override
+        public StreamPreprocessor.Resolver reposition( String name )
+        {
+            int slash = name.lastIndexOf( '/' );
+            return new DirectoryResolver(
+                    _directory + name.substring( 0, slash + 1 ) );
+        }
+
+        @Override
+        public Object resourceKey( String name )
+        {
+            return _directory + name;
+        }
+    }
+
+    private final Map<String,String> _tree = Map.of(
+            "a/inc", "#include \"x.h\"" + NL,
+            "b/inc", "#include \"x.h\"" + NL,
+            "a/x.h", "A",
+            "b/x.h", "B" );
+
+    @Test
+    public void testIncludeCacheSameName() throws IOException
+    {
+        var cache = new HashMap<Object,byte[]>();
+        var input = "#include a/inc" + NL + "#include b/inc" + NL + "#include a/inc";
+
+        for ( int i = 0 ; i < 2 ; i++ )
+        {
+            try ( var sp = new StreamPreprocessor(
+                    new ByteArrayInputStream( input.getBytes( StandardCharsets.UTF_8 ) ),
+                    new DirectoryResolver( "" ),
+                    StandardCharsets.UTF_8,
+                    cache ) )
+            {
+                assertEquals(
+                        "A" + NL + "B" + NL + "A" + NL,
+                        new String( sp.readAllBytes(), StandardCharsets.UTF_8 ) );
+            }
+        }
+
+        assertEquals( 4, _resolveCount.get() );
+        assertEquals( 4, cache.size() );
+    }
+}
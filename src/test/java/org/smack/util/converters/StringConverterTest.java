@@ -6,11 +6,20 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.awt.Color;
+import java.math.BigDecimal;
 import java.net.URL;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
+import org.smack.util.StringUtil;
 import org.smack.util.ServiceManager;
 
 public class StringConverterTest
@@ -155,4 +164,330 @@ public class StringConverterTest
                 new URL( urlTxt ),
                 _cvt.convert( URL.class, urlTxt ) );
     }
+
+    @Test
+    public void testConcurrentSynthesize() throws Exception
+    {
+        var cvt = new StringConverter();
+
+        var executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            var tasks = new ArrayList<Callable<Object>>();
+            for ( int i = 0 ; i < 64 ; i++ )
+            {
+                tasks.add( () -> cvt.convert( Month[][].class, "JUNE" ) );
+                tasks.add( () -> cvt.convert( Locale[].class, "fr it" ) );
+                tasks.add( () -> cvt.getConverter( Month[].class ) );
+            }
+
+            for ( var c : executor.invokeAll( tasks ) )
+                c.get();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // Synthesized converters are published once.
+        assertTrue(
+                cvt.getConverter( Month[].class ) ==
+                cvt.getConverter( Month[].class ) );
+        assertArrayEquals(
+                new Month[][] { { Month.JUNE } },
+                cvt.convert( Month[][].class, "JUNE" ) );
+    }
+
+    @Test
+    public void testPutAfterLookup() throws Exception
+    {
+        var cvt = new StringConverter();
+
+        assertEquals(
+                Month.MAY,
+                cvt.convert( Month.class, "MAY" ) );
+        assertTrue( cvt.getConverter( StringConverterTest.class ) == null );
+
+        // Registration replaces resolved and missing converters.
+        cvt.put( Month.class, s -> Month.JANUARY );
+        cvt.put( StringConverterTest.class, s -> this );
+
+        assertEquals(
+                Month.JANUARY,
+                cvt.convert( Month.class, "MAY" ) );
+        assertTrue(
+                this == cvt.convert( StringConverterTest.class, "" ) );
+    }
+
+    /**
+     * Not convertible unless a converter is registered.
+     */
+    public static class Unknown
+    {
+        private final String _value;
+
+        private Unknown( String value )
+        {
+            _value = value;
+        }
+    }
+
+    @Test
+    public void testPutAfterArrayLookup() throws Exception
+    {
+        var cvt = new StringConverter();
+
+        assertTrue( cvt.getConverter( Unknown[].class ) == null );
+
+        // Registration of the component type enables the array.
+        cvt.put( Unknown.class, Unknown::new );
+
+        var array = cvt.convert( Unknown[].class, "a b" );
+        assertEquals( 2, array.length );
+        assertEquals( "a", array[0]._value );
+        assertEquals( "b", array[1]._value );
+
+        // The array uses a replaced component converter.
+        cvt.put( Unknown.class, s -> new Unknown( s + s ) );
+
+        array = cvt.convert( Unknown[].class, "a" );
+        assertEquals( 1, array.length );
+        assertEquals( "aa", array[0]._value );
+    }
+
+    @Test
+    public void testPutPrimitive() throws Exception
+    {
+        var cvt = new StringConverter();
+
+        // A registered converter is used by the primitive conversion.
+        cvt.put( int.class, s -> Integer.parseInt( s ) * 2 );
+        cvt.put( long.class, s -> Long.parseLong( s ) * 2 );
+        cvt.put( double.class, s -> Double.parseDouble( s ) * 2 );
+
+        assertEquals( 6, cvt.convertInt( "x=3;", 2, 1 ) );
+        assertEquals( 6L, cvt.convertLong( "3" ) );
+        assertEquals( 6.0, cvt.convertDouble( "3" ), 0.0 );
+        assertArrayEquals( new int[] { 2, 4 }, cvt.convertIntArray( "1 2" ) );
+
+        // A primitive converter is also registered for the type.
+        cvt.putInt( (s, offset, length) -> 313 );
+
+        assertEquals( 313, cvt.convertInt( "1" ) );
+        assertEquals( 313, (int)cvt.convert( int.class, "1" ) );
+    }
+
+    @Test
+    public void testConvertInt() throws Exception
+    {
+        var line = "a,313,-0x1f,b";
+
+        assertEquals( 313, _cvt.convertInt( line, 2, 3 ) );
+        assertEquals( -31, _cvt.convertInt( line, 6, 5 ) );
+
+        for ( var c : new String[] {
+                "0", "-0", "+7", "010", "#ff", "0XFF", "-2147483648", "2147483647" } )
+            assertEquals( c, (int)Integer.decode( c ), _cvt.convertInt( c ) );
+
+        for ( var c : new String[] {
+                "", "-", "0x", "0x-1", "--1", "2147483648", "-2147483649", "08", "1a" } )
+        {
+            try
+            {
+                _cvt.convertInt( c );
+                fail( c );
+            }
+            catch ( IllegalArgumentException expected )
+            {
+            }
+        }
+    }
+
+    @Test
+    public void testConvertLong() throws Exception
+    {
+        for ( var c : new String[] {
+                "0", "-0x8000000000000000", "0x7fffffffffffffff", "-010", "9" } )
+            assertEquals( c, (long)Long.decode( c ), _cvt.convertLong( c ) );
+
+        for ( var c : new String[] {
+                "0x8000000000000000", "-0x8000000000000001", "1.0" } )
+        {
+            try
+            {
+                _cvt.convertLong( c );
+                fail( c );
+            }
+            catch ( IllegalArgumentException expected )
+            {
+            }
+        }
+    }
+
+    @Test
+    public void testConvertDouble() throws Exception
+    {
+        assertEquals( 3.13, _cvt.convertDouble( "x=3.13;", 2, 4 ), 0.0 );
+        assertEquals( -1e3, _cvt.convertDouble( "-1e3" ), 0.0 );
+        assertEquals( 2.5, _cvt.convert( double.class, "2.5" ), 0.0 );
+    }
+
+    public static class ValueOf
+    {
+        private final String _value;
+
+        private ValueOf( String value )
+        {
+            _value = value;
+        }
+
+        public static ValueOf valueOf( String value )
+        {
+            if ( value.isEmpty() )
+                throw new IllegalStateException( "empty" );
+            return new ValueOf( value );
+        }
+    }
+
+    @Test
+    public void testStringSyntFactories() throws Exception
+    {
+        assertEquals(
+                new BigDecimal( "3.13" ),
+                _cvt.convert( BigDecimal.class, "3.13" ) );
+        assertEquals(
+                "313",
+                _cvt.convert( ValueOf.class, "313" )._value );
+        assertEquals(
+                LocalDate.of( 2021, 6, 1 ),
+                _cvt.convert( LocalDate.class, "2021-06-01" ) );
+        assertArrayEquals(
+                new Duration[] { Duration.ofSeconds( 1 ), Duration.ofMinutes( 2 ) },
+                _cvt.convert( Duration[].class, "PT1S PT2M" ) );
+
+        try
+        {
+            _cvt.convert( ValueOf.class, "" );
+            fail();
+        }
+        catch ( IllegalArgumentException expected )
+        {
+            assertTrue( expected.getCause() instanceof IllegalStateException );
+        }
+
+        try
+        {
+            _cvt.convert( BigDecimal.class, "x" );
+            fail();
+        }
+        catch ( NumberFormatException expected )
+        {
+        }
+    }
+
+    @Test
+    public void testEnumUnknown() throws Exception
+    {
+        try
+        {
+            _cvt.convert( Month.class, "Brumaire" );
+            fail();
+        }
+        catch ( IllegalArgumentException expected )
+        {
+            assertTrue( expected.getMessage().contains( "JANUARY" ) );
+        }
+    }
+
+    @Test
+    public void testTokenizer() throws Exception
+    {
+        for ( var c : new String[] {
+                "",
+                "  a  bb\tccc ",
+                "Admiral \"von Schneider\"",
+                "a\"b c\"d \"\" e",
+                "x \"open end" } )
+        {
+            var tokens = new QuotedTokenizer( c );
+            var actual = new ArrayList<String>();
+            while ( tokens.next() )
+                actual.add( tokens.toString() );
+
+            assertEquals(
+                    c,
+                    List.of( StringUtil.splitQuoted( c ) ),
+                    actual );
+        }
+    }
+
+    @Test
+    public void testBulkArrays() throws Exception
+    {
+        assertArrayEquals(
+                new int[] { 1, -2, 0x10, 8 },
+                _cvt.convertIntArray( " 1 -2\t0x10 \"010\" " ) );
+        assertArrayEquals(
+                new long[] { Long.MAX_VALUE, Long.MIN_VALUE },
+                _cvt.convert( long[].class, "0x7fffffffffffffff -0x8000000000000000" ) );
+        assertArrayEquals(
+                new double[] { 1.5, -2e3 },
+                _cvt.convertDoubleArray( "1.5 -2e3" ),
+                0.0 );
+        assertArrayEquals(
+                new int[0],
+                _cvt.convertIntArray( "  " ) );
+        assertArrayEquals(
+                new Month[] { Month.MAY, Month.JUNE },
+                _cvt.convert( Month[].class, "MAY JUNE" ) );
+
+        try
+        {
+            _cvt.convertIntArray( "1 2 x" );
+            fail();
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    @Test
+    public void testBulkParallel() throws Exception
+    {
+        var count = 100_000;
+        var input = new StringBuilder();
+        for ( int i = 0 ; i < count ; i++ )
+            input.append( i - count / 2 ).append( i % 7 == 0 ? "\n" : " " );
+
+        var ints = _cvt.convertIntArray( input, true );
+        assertArrayEquals( _cvt.convertIntArray( input ), ints );
+        assertEquals( count, ints.length );
+        assertEquals( -count / 2, ints[0] );
+        assertEquals( count / 2 - 1, ints[count - 1] );
+
+        assertArrayEquals(
+                _cvt.convertLongArray( input ),
+                _cvt.convertLongArray( input, true ) );
+        assertArrayEquals(
+                _cvt.convertDoubleArray( input ),
+                _cvt.convertDoubleArray( input, true ),
+                0.0 );
+    }
+
+    @Test
+    public void testCollections() throws Exception
+    {
+        assertEquals(
+                List.of( Month.MAY, Month.JUNE, Month.MAY ),
+                _cvt.convertList( Month.class, "MAY JUNE MAY" ) );
+        assertEquals(
+                List.of( "von Schneider", "x" ),
+                _cvt.convertList( String.class, "\"von Schneider\" x" ) );
+        assertEquals(
+                List.of( 3, 1 ),
+                new ArrayList<>( _cvt.convertSet( Integer.class, "3 1 3" ) ) );
+        assertEquals(
+                Set.of(),
+                _cvt.convertSet( Integer.class, "" ) );
+    }
 }
@@ -0,0 +1,190 @@
+package org.smack.util.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+import org.smack.util.io.OutputStreamForwarder.Backpressure;
+
+public class OutputStreamForwarderTest
+{
+    @Test
+    public void testForward() throws IOException
+    {
+        var target = new ByteArrayOutputStream();
+        var expected = new ByteArrayOutputStream();
+
+        try ( var f = new OutputStreamForwarder( target, 2, Backpressure.BLOCK ) )
+        {
+            for ( int i = 0 ; i < 10_000 ; i++ )
+            {
+                f.write( i );
+                expected.write( i );
+
+                var b = Integer.toString( i ).getBytes();
+                f.write( b, 1, b.length-1 );
+                expected.write( b, 1, b.length-1 );
+            }
+
+            f.flush();
+            assertArrayEquals( expected.toByteArray(), target.toByteArray() );
+        }
+    }
+
+    @Test
+    public void testFail() throws Exception
+    {
+        var blocked = new CountDownLatch( 1 );
+
+        OutputStream target = new OutputStream()
+        {
+            @Override
+            public void write( int b ) throws IOException
+            {
+                try
+                {
+                    blocked.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new IOException( e );
+                }
+            }
+        };
+
+        var f = new OutputStreamForwarder( target, 1, Backpressure.FAIL );
+        var data = new byte[ 1024 ];
+
+        try
+        {
+            // The target blocks, so eventually all chunks are in use.
+            for ( int i = 0 ; i < 100 ; i++ )
+                f.write( data );
+            fail();
+        }
+        catch ( IOException expected )
+        {
+            assertEquals( "Pipe broken -- no consumer.", expected.getMessage() );
+        }
+        finally
+        {
+            blocked.countDown();
+        }
+    }
+
+    @Test
+    public void testFailLargeWrite() throws IOException
+    {
+        var target = new ByteArrayOutputStream();
+        var data = new byte[ 100_000 ];
+        for ( int i = 0 ; i < data.length ; i++ )
+            data[i] = (byte)i;
+
+        // The write needs more chunks than the capacity allows.
+        try ( var f = new OutputStreamForwarder( target, 1 ) )
+        {
+            f.write( data );
+            f.flush();
+            assertArrayEquals( data, target.toByteArray() );
+        }
+    }
+
+    @Test( timeout = 10_000 )
+    public void testRejectedExecutor() throws IOException
+    {
+        var target = new ByteArrayOutputStream();
+
+        var f = new OutputStreamForwarder(
+                target,
+                2,
+                Backpressure.BLOCK,
+                c -> { throw new RejectedExecutionException(); } );
+
+        try
+        {
+            f.write( 1 );
+            fail();
+        }
+        catch ( IOException expected )
+        {
+            assertEquals( "Forwarding task rejected.", expected.getMessage() );
+        }
+
+        // The queued data cannot be forwarded.
+        try
+        {
+            f.flush();
+            fail();
+        }
+        catch ( IOException expected )
+        {
+            assertEquals( "Forwarding task rejected.", expected.getMessage() );
+        }
+        try
+        {
+            f.close();
+            fail();
+        }
+        catch ( IOException expected )
+        {
+            assertEquals( "Forwarding task rejected.", expected.getMessage() );
+        }
+    }
+
+    private void executor( Executor executor ) throws IOException
+    {
+        var targets = new ByteArrayOutputStream[ 50 ];
+        var forwarders = new OutputStreamForwarder[ targets.length ];
+
+        for ( int i = 0 ; i < targets.length ; i++ )
+        {
+            targets[i] = new ByteArrayOutputStream();
+            forwarders[i] = new OutputStreamForwarder(
+                    targets[i], 2, Backpressure.BLOCK, executor );
+        }
+
+        var expected = new ByteArrayOutputStream();
+        for ( int i = 0 ; i < 1_000 ; i++ )
+        {
+            var b = Integer.toString( i ).getBytes();
+            expected.write( b );
+            for ( var f : forwarders )
+                f.write( b );
+        }
+
+        for ( int i = 0 ; i < targets.length ; i++ )
+        {
+            forwarders[i].close();
+            assertArrayEquals( expected.toByteArray(), targets[i].toByteArray() );
+        }
+    }
+
+    @Test
+    public void testSharedExecutor() throws IOException
+    {
+        var pool = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            executor( pool );
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDirectExecutor() throws IOException
+    {
+        executor( Runnable::run );
+    }
+}
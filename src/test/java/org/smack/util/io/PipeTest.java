@@ -1,8 +1,12 @@
 package org.smack.util.io;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -34,4 +38,104 @@ public class PipeTest
     {
         singleChar( new SimplePipe() );
     }
+    @Test
+    public void testPipePowerLockFree() throws IOException
+    {
+        singleChar( new PowerPipe( 16, true ) );
+    }
+
+    private void bulk( Pipe p ) throws Exception
+    {
+        var data = new byte[ 100_000 ];
+        new Random( 313 ).nextBytes( data );
+
+        var writer = new Thread( () -> {
+            try
+            {
+                var w = p.getWriteEnd();
+                for ( int i = 0 ; i < data.length ; i += 777 )
+                    w.write( data, i, Math.min( 777, data.length - i ) );
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( e );
+            }
+        } );
+        writer.start();
+
+        var received = new ByteArrayOutputStream();
+        var buffer = new byte[ 1000 ];
+        var r = p.getReadEnd();
+        while ( received.size() < data.length )
+        {
+            int count = r.read( buffer, 0, buffer.length );
+            received.write( buffer, 0, count );
+        }
+
+        writer.join();
+        p.close();
+
+        assertArrayEquals( data, received.toByteArray() );
+        assertEquals( -1, r.read() );
+    }
+
+    @Test
+    public void testBulkPower() throws Exception
+    {
+        bulk( new PowerPipe( 100 ) );
+    }
+    @Test
+    public void testBulkPowerLockFree() throws Exception
+    {
+        bulk( new PowerPipe( 100, true ) );
+    }
+    @Test
+    public void testBulkNio() throws Exception
+    {
+        bulk( new NioPipe( 100 ) );
+    }
+
+    @Test
+    public void testNioBuffers() throws Exception
+    {
+        var p = new NioPipe( 64 );
+
+        assertEquals( p.getWriteEnd(), p.getWriteEnd() );
+        assertEquals( p.getReadEnd(), p.getReadEnd() );
+
+        var out = p.acquireBuffer();
+        assertTrue( out.isDirect() );
+        assertEquals( 64, out.capacity() );
+        out.put( "smack".getBytes() ).flip();
+        p.send( out );
+
+        var in = p.receive();
+        var received = new byte[ in.remaining() ];
+        in.get( received );
+        p.releaseBuffer( in );
+        assertArrayEquals( "smack".getBytes(), received );
+
+        p.close();
+    }
+
+    @Test
+    public void testNioReceiveBuffered() throws Exception
+    {
+        var p = new NioPipe( 64 );
+
+        p.getWriteEnd().write( "smack".getBytes() );
+
+        // Reading a single byte fills the read end's buffer.
+        assertEquals( 's', p.getReadEnd().read() );
+
+        var in = p.receive();
+        var received = new byte[ in.remaining() ];
+        in.get( received );
+        p.releaseBuffer( in );
+        assertArrayEquals( "mack".getBytes(), received );
+
+        p.close();
+        assertEquals( null, p.receive() );
+        assertEquals( -1, p.getReadEnd().read() );
+    }
 }
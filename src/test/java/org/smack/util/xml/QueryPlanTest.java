@@ -0,0 +1,111 @@
+package org.smack.util.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class QueryPlanTest
+{
+    @Test
+    public void testStreaming() throws Exception
+    {
+        var plan = new QueryPlan();
+        var donaldian = plan.add( "/vector/donaldian", Integer::valueOf );
+        var donaldians = plan.addNodes( "/vector/donaldians/donaldian", Integer::valueOf );
+        var all = plan.addNodes( "//donaldian" );
+        var missing = plan.add( "/vector/missing" );
+
+        assertTrue( plan.isStreamable() );
+
+        var results = plan.evaluate(
+                getClass().getResourceAsStream( "nodeTest.xml" ) );
+
+        assertEquals( 262, (int)results.get( donaldian ) );
+        assertEquals( List.of( 313, 314, 315, 316 ), results.get( donaldians ) );
+        assertEquals( 5, results.get( all ).size() );
+        assertEquals( "", results.get( missing ) );
+    }
+
+    @Test
+    public void testDom() throws Exception
+    {
+        var plan = new QueryPlan();
+        var count = plan.add( "count(//donaldian)", Integer::valueOf );
+        var second = plan.add( "/vector/donaldians/donaldian[2]" );
+        var all = plan.addNodes( "//donaldian" );
+        var attribute = plan.add( "/vector/@android:height" );
+
+        assertFalse( plan.isStreamable() );
+
+        var results = plan.evaluate(
+                getClass().getResourceAsStream( "nodeTest.xml" ) );
+
+        assertEquals( 5, (int)results.get( count ) );
+        assertEquals( "314", results.get( second ) );
+        assertEquals( 5, results.get( all ).size() );
+        assertEquals( "24dp", results.get( attribute ) );
+    }
+
+    @Test
+    public void testConcurrent() throws Exception
+    {
+        var plan = new QueryPlan();
+        var count = plan.add( "count(//donaldian)", Integer::valueOf );
+
+        @SuppressWarnings("unchecked")
+        QueryPlan.Query<String>[] queries = new QueryPlan.Query[4];
+        for ( int i = 0 ; i < queries.length ; i++ )
+            queries[i] = plan.add( "/vector/donaldians/donaldian[" + (i+1) + "]" );
+
+        // A completely built plan is evaluated by several threads.
+        var executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            var futures = new ArrayList<Future<QueryPlan.Results>>();
+            for ( int run = 0 ; run < 10 ; run++ )
+                futures.add( executor.submit( () -> plan.evaluate(
+                        getClass().getResourceAsStream( "nodeTest.xml" ) ) ) );
+
+            for ( var c : futures )
+            {
+                var results = c.get();
+
+                assertEquals( 5, (int)results.get( count ) );
+                for ( int i = 0 ; i < queries.length ; i++ )
+                    assertEquals( Integer.toString( 313 + i ), results.get( queries[i] ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testForeignQuery() throws Exception
+    {
+        var plan = new QueryPlan();
+        plan.add( "/vector/donaldian" );
+        var foreign = new QueryPlan().add( "/vector/donaldian" );
+
+        var results = plan.evaluate(
+                getClass().getResourceAsStream( "nodeTest.xml" ) );
+
+        try
+        {
+            results.get( foreign );
+            fail();
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+}
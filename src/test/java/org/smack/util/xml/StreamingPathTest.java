@@ -0,0 +1,113 @@
+package org.smack.util.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class StreamingPathTest
+{
+    private static final String XML =
+            "<?xml version='1.0'?>\n" +
+            "<!DOCTYPE root SYSTEM 'does-not-exist.dtd'>\n" +
+            "<root xmlns:n='urn:n'>" +
+            "<item id='1' type='x'>one<sub>A</sub></item>" +
+            "<group>" +
+            "<item id='2'>two<item id='3' type='x'>three</item></item>" +
+            "</group>" +
+            "<n:item n:id='4'><![CDATA[four]]></n:item>" +
+            "<other xmlns='urn:default'><item id='5'/></other>" +
+            "</root>";
+
+    private static InputStream xml()
+    {
+        return new ByteArrayInputStream( XML.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private static List<String> streamed( String expression ) throws Exception
+    {
+        var result = new ArrayList<String>();
+        StreamingPath.compile( expression ).evaluate( xml(), result::add );
+        return result;
+    }
+
+    private static void assertSameAsDom( String expression ) throws Exception
+    {
+        // The dom based evaluation does not ignore missing dtds.
+        var dom = XmlUtil.getXPathNodes(
+                new ByteArrayInputStream( XML.replaceAll( "<!DOCTYPE[^>]*>", "" )
+                        .getBytes( StandardCharsets.UTF_8 ) ),
+                expression );
+
+        assertEquals( expression, dom, streamed( expression ) );
+    }
+
+    @Test
+    public void testSameAsDom() throws Exception
+    {
+        assertSameAsDom( "/root/item" );
+        assertSameAsDom( "//item" );
+        assertSameAsDom( "//item/@id" );
+        assertSameAsDom( "//@id" );
+        assertSameAsDom( "/root//item[@type='x']" );
+        assertSameAsDom( "//item[@type]/@id" );
+        assertSameAsDom( "/root/*" );
+        assertSameAsDom( "/root/*/@*" );
+        assertSameAsDom( "//n:item" );
+        assertSameAsDom( "//n:item/@n:id" );
+        assertSameAsDom( "//group//item/sub" );
+        assertSameAsDom( "/item" );
+    }
+
+    @Test
+    public void testStream() throws Exception
+    {
+        try ( var stream = StreamingPath.compile( "//item/@id" ).stream( xml() ) )
+        {
+            assertEquals( "1", stream.findFirst().get() );
+        }
+    }
+
+    @Test
+    public void testStreamable() throws Exception
+    {
+        assertTrue( StreamingPath.isStreamable( "/a/b/c" ) );
+        assertTrue( StreamingPath.isStreamable( "//a[@b=\"c\"][@d]/@e" ) );
+
+        assertFalse( StreamingPath.isStreamable( "a/b" ) );
+        assertFalse( StreamingPath.isStreamable( "/a/b/" ) );
+        assertFalse( StreamingPath.isStreamable( "/a[1]" ) );
+        assertFalse( StreamingPath.isStreamable( "/a/text()" ) );
+        assertFalse( StreamingPath.isStreamable( "/a//@b" ) );
+        assertFalse( StreamingPath.isStreamable( "/a/@b/c" ) );
+        assertFalse( StreamingPath.isStreamable( "count(/a)" ) );
+    }
+
+    @Test
+    public void testFallback() throws Exception
+    {
+        try ( var stream = XmlUtil.streamXPathNodes(
+                getClass().getResourceAsStream( "nodeTest.xml" ),
+                "/vector/donaldians/donaldian[2]" ) )
+        {
+            assertEquals(
+                    List.of( "314" ),
+                    stream.collect( Collectors.toList() ) );
+        }
+
+        try ( var stream = XmlUtil.streamXPathNodes(
+                getClass().getResourceAsStream( "nodeTest.xml" ),
+                "//donaldian" ) )
+        {
+            assertEquals( 5, stream.count() );
+        }
+    }
+}
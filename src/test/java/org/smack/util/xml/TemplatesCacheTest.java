@@ -0,0 +1,127 @@
+package org.smack.util.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TemplatesCacheTest
+{
+    private final List<Path> _files = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        for ( int i = 0 ; i < 3 ; i++ )
+        {
+            var file = Files.createTempFile( getClass().getSimpleName(), ".xsl" );
+            try ( var is = getClass().getResourceAsStream( "simple.xsl" ) )
+            {
+                Files.copy( is, file, StandardCopyOption.REPLACE_EXISTING );
+            }
+            _files.add( file );
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        for ( var c : _files )
+            Files.deleteIfExists( c );
+    }
+
+    @Test
+    public void testCached() throws Exception
+    {
+        var cache = new TemplatesCache( 2 );
+
+        var first = cache.get( _files.get( 0 ) );
+        assertSame( first, cache.get( _files.get( 0 ) ) );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void testModified() throws Exception
+    {
+        var cache = new TemplatesCache( 2 );
+        var file = _files.get( 0 );
+
+        var first = cache.get( file );
+
+        Files.setLastModifiedTime(
+                file,
+                FileTime.fromMillis(
+                        Files.getLastModifiedTime( file ).toMillis() + 2000 ) );
+
+        var second = cache.get( file );
+        assertNotSame( first, second );
+        assertSame( second, cache.get( file ) );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void testIncludeModified() throws Exception
+    {
+        var directory = Files.createTempDirectory( getClass().getSimpleName() );
+        var main = directory.resolve( "main.xsl" );
+        var part = directory.resolve( "part.xsl" );
+        _files.add( part );
+        _files.add( main );
+        _files.add( directory );
+
+        Files.writeString( main,
+                "<xsl:stylesheet version=\"1.0\" " +
+                "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+                "<xsl:include href=\"part.xsl\"/>\n" +
+                "</xsl:stylesheet>" );
+        Files.writeString( part,
+                "<xsl:stylesheet version=\"1.0\" " +
+                "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+                "<xsl:template match=\"/\">part</xsl:template>\n" +
+                "</xsl:stylesheet>" );
+
+        var cache = new TemplatesCache( 2 );
+
+        var first = cache.get( main );
+        assertSame( first, cache.get( main ) );
+
+        Files.setLastModifiedTime(
+                part,
+                FileTime.fromMillis(
+                        Files.getLastModifiedTime( part ).toMillis() + 2000 ) );
+
+        var second = cache.get( main );
+        assertNotSame( first, second );
+        assertSame( second, cache.get( main ) );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        var cache = new TemplatesCache( 2 );
+
+        var first = cache.get( _files.get( 0 ) );
+        var second = cache.get( _files.get( 1 ) );
+        // Makes the first entry the most recently used.
+        assertSame( first, cache.get( _files.get( 0 ) ) );
+        cache.get( _files.get( 2 ) );
+
+        assertEquals( 2, cache.size() );
+        assertSame( first, cache.get( _files.get( 0 ) ) );
+        assertNotSame( second, cache.get( _files.get( 1 ) ) );
+
+        cache.clear();
+        assertEquals( 0, cache.size() );
+    }
+}
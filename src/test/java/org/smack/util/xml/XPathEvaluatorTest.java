@@ -0,0 +1,92 @@
+package org.smack.util.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XPathEvaluatorTest
+{
+    private static Document parse( XPathEvaluator evaluator, String xml )
+        throws Exception
+    {
+        return evaluator.parse( new ByteArrayInputStream(
+                xml.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    @Test
+    public void testCached() throws Exception
+    {
+        var evaluator = new XPathEvaluator();
+
+        try ( var is = getClass().getResourceAsStream( "ic_car.xml" ) )
+        {
+            var doc = evaluator.parse( is );
+
+            var expression = evaluator.compile( doc, "/vector/@android:height" );
+            assertSame( expression, evaluator.compile( doc, "/vector/@android:height" ) );
+            assertEquals( "24dp", evaluator.evaluate( doc, "/vector/@android:height" ) );
+            assertEquals( 1, evaluator.size() );
+        }
+    }
+
+    @Test
+    public void testNestedNamespace() throws Exception
+    {
+        var evaluator = new XPathEvaluator();
+
+        var doc = parse(
+                evaluator,
+                "<a><b xmlns:x='urn:x'><x:c>313</x:c></b></a>" );
+
+        assertEquals( "313", evaluator.evaluate( doc, "//x:c" ) );
+    }
+
+    @Test
+    public void testRebound() throws Exception
+    {
+        var evaluator = new XPathEvaluator();
+
+        var first = parse(
+                evaluator,
+                "<x:a xmlns:x='urn:first'><x:b>1</x:b></x:a>" );
+        var same = parse(
+                evaluator,
+                "<x:a xmlns:x='urn:first'><x:b>2</x:b></x:a>" );
+        var second = parse(
+                evaluator,
+                "<x:a xmlns:x='urn:second'><x:b>3</x:b></x:a>" );
+
+        var expression = evaluator.compile( first, "/x:a/x:b" );
+        assertEquals( "1", evaluator.evaluate( first, "/x:a/x:b" ) );
+
+        // Same binding, the compiled expression is reused.
+        assertSame( expression, evaluator.compile( same, "/x:a/x:b" ) );
+        assertEquals( "2", evaluator.evaluate( same, "/x:a/x:b" ) );
+
+        // Different binding, the expression is recompiled.
+        assertNotSame( expression, evaluator.compile( second, "/x:a/x:b" ) );
+        assertEquals( "3", evaluator.evaluate( second, "/x:a/x:b" ) );
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        var evaluator = new XPathEvaluator( 2 );
+
+        var doc = parse( evaluator, "<a><b>1</b><c>2</c></a>" );
+
+        var b = evaluator.compile( doc, "/a/b" );
+        evaluator.compile( doc, "/a/c" );
+        evaluator.compile( doc, "/a" );
+
+        assertEquals( 2, evaluator.size() );
+        assertNotSame( b, evaluator.compile( doc, "/a/b" ) );
+        assertEquals( 2, evaluator.evaluateNodes( doc, "/a/*" ).size() );
+    }
+}
@@ -6,12 +6,22 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 
 import org.junit.Test;
@@ -119,6 +129,245 @@ public class XmlUtilTest
                 resultLines );
     }
 
+    @Test
+    public void testTransformStreaming() throws Exception
+    {
+        File styleSheet = makeFileFromStream(
+                getClass().getResourceAsStream( "simple.xsl" ) );
+        File xml = makeFileFromStream(
+                getClass().getResourceAsStream( "simple.xml" ) );
+        var expected = FileUtil.readLines(
+                getClass().getResourceAsStream( "simple.out" ) );
+
+        var bos = new ByteArrayOutputStream();
+        XmlUtil.transform( styleSheet, xml, Collections.emptyMap(), bos );
+        assertEquals(
+                expected,
+                Arrays.asList( bos.toString().split( "\\R" ) ) );
+
+        var writer = new StringWriter();
+        XmlUtil.transform( styleSheet, xml, Collections.emptyMap(), writer );
+        assertEquals(
+                expected,
+                Arrays.asList( writer.toString().split( "\\R" ) ) );
+
+        var target = Files.createTempFile( getClass().getSimpleName(), null );
+        try
+        {
+            XmlUtil.transform( styleSheet, xml, Collections.emptyMap(), target );
+            assertEquals(
+                    expected,
+                    Files.readAllLines( target ) );
+        }
+        finally
+        {
+            Files.delete( target );
+        }
+    }
+
+    @Test
+    public void testTransformMany() throws Exception
+    {
+        File styleSheet = makeFileFromStream(
+                getClass().getResourceAsStream( "simple.xsl" ) );
+        var expected = FileUtil.readLines(
+                getClass().getResourceAsStream( "simple.out" ) );
+
+        var inputs = new ArrayList<File>();
+        for ( int i = 0 ; i < 3 ; i++ )
+            inputs.add( makeFileFromStream(
+                    getClass().getResourceAsStream( "simple.xml" ) ) );
+
+        var targets = new HashMap<File, Path>();
+
+        try
+        {
+            XmlUtil.transform(
+                    styleSheet,
+                    Collections.emptyMap(),
+                    inputs,
+                    c -> targets.computeIfAbsent(
+                            c,
+                            f -> Paths.get( f.getPath() + ".out" ) ) );
+
+            assertEquals( inputs.size(), targets.size() );
+            for ( var c : targets.values() )
+                assertEquals( expected, Files.readAllLines( c ) );
+        }
+        finally
+        {
+            for ( var c : targets.values() )
+                Files.deleteIfExists( c );
+        }
+    }
+
+    @Test
+    public void testTransformDirectory() throws Exception
+    {
+        File styleSheet = makeFileFromStream(
+                getClass().getResourceAsStream( "simple.xsl" ) );
+        var expected = FileUtil.readLines(
+                getClass().getResourceAsStream( "simple.out" ) );
+
+        var source = Files.createTempDirectory( getClass().getSimpleName() );
+        var target = source.resolve( "target" );
+
+        try
+        {
+            for ( int i = 0 ; i < 10 ; i++ )
+            {
+                try ( var is = getClass().getResourceAsStream( "simple.xml" ) )
+                {
+                    Files.copy( is, source.resolve( i + ".xml" ) );
+                }
+            }
+            Files.writeString( source.resolve( "ignored.txt" ), "ignored" );
+
+            assertEquals( 10, XmlUtil.transformDirectory(
+                    styleSheet,
+                    Collections.emptyMap(),
+                    source,
+                    target,
+                    4 ) );
+
+            for ( int i = 0 ; i < 10 ; i++ )
+            {
+                assertEquals(
+                        expected,
+                        Files.readAllLines( target.resolve( i + ".xml" ) ) );
+            }
+        }
+        finally
+        {
+            try ( var files = Files.walk( source ) )
+            {
+                files.sorted( Comparator.reverseOrder() )
+                    .map( Path::toFile )
+                    .forEach( File::delete );
+            }
+        }
+    }
+
+    @Test
+    public void testTransformManyFailure() throws Exception
+    {
+        File styleSheet = makeFileFromStream(
+                getClass().getResourceAsStream( "simple.xsl" ) );
+        var missing = new File( styleSheet.getPath() + ".missing" );
+
+        try
+        {
+            XmlUtil.transform(
+                    styleSheet,
+                    Collections.emptyMap(),
+                    Arrays.asList( missing, missing ),
+                    c -> Paths.get( c.getPath() + ".out" ),
+                    2 );
+            fail();
+        }
+        catch ( FileNotFoundException expected )
+        {
+        }
+
+        assertFalse( Files.exists( Paths.get( missing.getPath() + ".out" ) ) );
+    }
+
+    @Test
+    public void testTransformFailureKeepsTarget() throws Exception
+    {
+        var xsl =
+                "<xsl:stylesheet version=\"1.0\" " +
+                "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+                "<xsl:template match=\"/\">partial" +
+                "<xsl:message terminate=\"yes\">failed</xsl:message>" +
+                "</xsl:template>\n" +
+                "</xsl:stylesheet>";
+        File styleSheet = makeFileFromStream(
+                new ByteArrayInputStream( xsl.getBytes( StandardCharsets.UTF_8 ) ) );
+        File xml = makeFileFromStream(
+                getClass().getResourceAsStream( "simple.xml" ) );
+
+        var directory = Files.createTempDirectory( getClass().getSimpleName() );
+        var target = directory.resolve( "target.txt" );
+
+        try
+        {
+            Files.writeString( target, "original" );
+
+            try
+            {
+                XmlUtil.transform(
+                        styleSheet,
+                        xml,
+                        Collections.emptyMap(),
+                        target );
+                fail();
+            }
+            catch ( Exception expected )
+            {
+            }
+
+            assertEquals( "original", Files.readString( target ) );
+            try ( var files = Files.list( directory ) )
+            {
+                assertEquals( 1, files.count() );
+            }
+        }
+        finally
+        {
+            try ( var files = Files.walk( directory ) )
+            {
+                files.sorted( Comparator.reverseOrder() )
+                    .map( Path::toFile )
+                    .forEach( File::delete );
+            }
+        }
+    }
+
+    @Test
+    public void testTransformMissingDtd() throws Exception
+    {
+        var xml =
+                "<?xml version=\"1.0\"?>\n" +
+                "<!DOCTYPE Article SYSTEM \"does-not-exist.dtd\">\n" +
+                "<Article><Title>My Article</Title></Article>";
+
+        String result = XmlUtil.transform(
+                getClass().getResourceAsStream( "simple.xsl" ),
+                new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+
+        assertTrue( result.contains( "Article - My Article" ) );
+    }
+
+    @Test
+    public void testTransformNamespaces() throws Exception
+    {
+        var xml =
+                "<a:r xmlns:a=\"urn:a\" xmlns=\"urn:d\">" +
+                "<a:x>1</a:x><y>2</y><z a:att=\"3\"/></a:r>";
+        var xsl =
+                "<xsl:stylesheet version=\"1.0\" " +
+                "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" " +
+                "xmlns:p=\"urn:a\" xmlns:d=\"urn:d\">" +
+                "<xsl:output method=\"text\"/>" +
+                "<xsl:template match=\"/\">[" +
+                "<xsl:value-of select=\"p:r/p:x\"/>|" +
+                "<xsl:value-of select=\"p:r/d:y\"/>|" +
+                "<xsl:value-of select=\"//@p:att\"/>|" +
+                "<xsl:value-of select=\"count(//*)\"/>|" +
+                "<xsl:value-of select=\"name(/*)\"/>|" +
+                "<xsl:value-of select=\"namespace-uri(/*)\"/>]" +
+                "</xsl:template>" +
+                "</xsl:stylesheet>";
+
+        // The input is not parsed namespace aware.
+        String result = XmlUtil.transform(
+                new ByteArrayInputStream( xsl.getBytes( StandardCharsets.UTF_8 ) ),
+                new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+
+        assertEquals( "[|||4|r|]", result );
+    }
+
     @Test
     public void testXpath() throws Exception
     {